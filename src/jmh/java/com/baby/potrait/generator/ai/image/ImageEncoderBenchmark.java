@@ -0,0 +1,84 @@
+package com.baby.potrait.generator.ai.image;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a normalized 1024x1024 image per format and
+ * compression setting. The encoded size is reported next to the encode
+ * score as {@code encodedBytes}, since the point is trading CPU against
+ * upstream bytes.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageEncoderBenchmark {
+
+    @Param({"png:1", "png:4", "png:9", "jpeg:0.92", "jpeg:0.85"})
+    public String setting;
+
+    private ImageEncoder encoder;
+    private BufferedImage image;
+    private ByteArrayOutputStream out;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = setting.split(":");
+        boolean png = parts[0].equals("png");
+        encoder = new ImageEncoder(parts[0],
+                png ? Integer.parseInt(parts[1]) : 4,
+                png ? 0.92f : Float.parseFloat(parts[1]),
+                new SimpleMeterRegistry());
+
+        // Smooth gradients with scattered noise, roughly how a photo compresses
+        image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, 1024, 1024, Color.BLUE));
+        g.fillRect(0, 0, 1024, 1024);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            g.setColor(new Color(random.nextInt()));
+            g.fillRect(random.nextInt(1024), random.nextInt(1024), 3, 3);
+        }
+        g.dispose();
+
+        out = new ByteArrayOutputStream(2 * 1024 * 1024);
+        encoder.encode(image, out);
+        encoded = out.toByteArray();
+    }
+
+    /** Secondary result holding the size of the last encode, in bytes. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long encodedBytes;
+    }
+
+    @Benchmark
+    public int encode(EncodedSize size) throws IOException {
+        out.reset();
+        encoder.encode(image, out);
+        size.encodedBytes = out.size();
+        return out.size();
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(encoded));
+    }
+}
@@ -0,0 +1,71 @@
+package com.baby.potrait.generator.ai.image;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the normalization modes on a synthetic phone-sized photo.
+ *
+ * <pre>mvn -Pbench test-compile exec:exec -Djmh.args="ImageNormalizerBenchmark -prof gc"</pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImageNormalizerBenchmark {
+
+    @Param({"FIT", "CROP", "STRETCH"})
+    public ResizeMode mode;
+
+    @Param({"FAST", "QUALITY"})
+    public ScalingQuality quality;
+
+    /** 12 MP is a typical phone photo; 1 MP is already close to the target. */
+    @Param({"4000x3000", "1200x900"})
+    public String sourceSize;
+
+    private ImageNormalizer normalizer;
+    private byte[] jpeg;
+
+    @Setup
+    public void setUp() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        normalizer = new ImageNormalizer("crop", "quality", 8,
+                new ImageEncoder("png", 4, 0.92f, registry), registry);
+
+        String[] dims = sourceSize.split("x");
+        int width = Integer.parseInt(dims[0]);
+        int height = Integer.parseInt(dims[1]);
+
+        // Gradients and edges so the scalers have detail to filter and the encoder something to compress
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.WHITE);
+        for (int x = 0; x < width; x += 37) {
+            g.drawLine(x, 0, width - x, height);
+        }
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        jpeg = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] normalize() throws IOException {
+        return normalizer.normalize(jpeg, 1024, 1024, mode, quality);
+    }
+}
@@ -0,0 +1,87 @@
+package com.baby.potrait.generator.ai.provider;
+
+import okio.Buffer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The two CPU-bound ends of a provider call: building and serializing the
+ * multipart request, and decoding the base64 artifacts out of the response.
+ * Run with {@code -prof gc} to compare allocation of the streaming decode
+ * against the string-based one it replaced.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StabilityClientBenchmark {
+
+    @Param({"1", "4"})
+    public int samples;
+
+    private byte[] initImage;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        // Incompressible bytes of a typical normalized PNG's size; neither path looks inside the image
+        initImage = new byte[1_500_000];
+        new Random(7).nextBytes(initImage);
+        initImage[0] = (byte) 0x89;
+        response = StubStabilityServer.artifactsResponse(initImage, samples);
+    }
+
+    @Benchmark
+    public long buildRequestBody() throws IOException {
+        Buffer sink = new Buffer();
+        StabilityGenerationProvider.requestBody(initImage, "a watercolor portrait of a baby", samples).writeTo(sink);
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+
+    @Benchmark
+    public int decodeResponse() throws IOException {
+        return StabilityResponseParser.parseArtifacts(new ByteArrayInputStream(response),
+                new ArtifactSink() {
+                    @Override
+                    public OutputStream begin() {
+                        return OutputStream.nullOutputStream();
+                    }
+
+                    @Override
+                    public void end(boolean keep) {
+                    }
+
+                    @Override
+                    public void abort() {
+                    }
+                });
+    }
+
+    /**
+     * The response handling before the streaming parser: the whole body as a
+     * String, parsed into a JSONObject, every artifact decoded into its own array.
+     */
+    @Benchmark
+    public long decodeResponseAsString() throws JSONException {
+        JSONArray artifacts = new JSONObject(new String(response, StandardCharsets.UTF_8)).getJSONArray("artifacts");
+        long decoded = 0;
+        for (int i = 0; i < artifacts.length(); i++) {
+            decoded += Base64.getDecoder().decode(artifacts.getJSONObject(i).getString("base64")).length;
+        }
+        return decoded;
+    }
+}
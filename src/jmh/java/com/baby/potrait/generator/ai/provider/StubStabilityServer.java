@@ -0,0 +1,87 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for the Stability generation endpoint and for the style
+ * sample host. Drains the multipart request and answers with a canned
+ * artifacts response, optionally after a fixed delay.
+ */
+public final class StubStabilityServer implements AutoCloseable {
+
+    public static final String GENERATION_PATH = "/v1/generation/image-to-image";
+    public static final String SAMPLE_PATH = "/samples/style.png";
+
+    private final HttpServer server;
+    private final byte[] sampleImage;
+    private final long latencyMillis;
+
+    public StubStabilityServer(byte[] image, long latencyMillis) throws IOException {
+        this.sampleImage = image;
+        this.latencyMillis = latencyMillis;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext(SAMPLE_PATH, exchange -> respond(exchange, "image/png", sampleImage));
+        server.createContext(GENERATION_PATH, this::generate);
+        server.start();
+    }
+
+    /** A generation response carrying {@code samples} copies of the image. */
+    public static byte[] artifactsResponse(byte[] image, int samples) {
+        String base64 = Base64.getEncoder().encodeToString(image);
+        StringBuilder json = new StringBuilder(samples * (base64.length() + 64) + 16).append("{\"artifacts\":[");
+        for (int i = 0; i < samples; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"base64\":\"").append(base64).append("\",\"seed\":").append(i)
+                    .append(",\"finishReason\":\"SUCCESS\"}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private void generate(HttpExchange exchange) throws IOException {
+        int samples = 1;
+        try (InputStream body = exchange.getRequestBody()) {
+            String form = new String(body.readAllBytes(), StandardCharsets.ISO_8859_1);
+            int field = form.indexOf("name=\"samples\"");
+            if (field >= 0) {
+                // The value follows the part headers' blank line
+                int start = form.indexOf("\r\n\r\n", field) + 4;
+                samples = Integer.parseInt(form.substring(start, form.indexOf("\r\n", start)).trim());
+            }
+        }
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        respond(exchange, "application/json", artifactsResponse(sampleImage, samples));
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
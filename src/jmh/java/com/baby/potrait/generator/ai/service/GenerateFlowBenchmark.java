@@ -0,0 +1,187 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.image.ImageAdmission;
+import com.baby.potrait.generator.ai.image.ImageEncoder;
+import com.baby.potrait.generator.ai.image.ImageNormalizer;
+import com.baby.potrait.generator.ai.provider.GenerationProviderRouter;
+import com.baby.potrait.generator.ai.provider.LocalGenerationProvider;
+import com.baby.potrait.generator.ai.provider.StabilityGenerationProvider;
+import com.baby.potrait.generator.ai.provider.StubStabilityServer;
+import com.baby.potrait.generator.ai.ratelimit.ProviderCallLimiter;
+import com.baby.potrait.generator.ai.repository.PortraitRepository;
+import com.baby.potrait.generator.ai.repository.PortraitVariantRepository;
+import com.baby.potrait.generator.ai.repository.StyleRepository;
+import com.baby.potrait.generator.ai.resilience.CircuitBreaker;
+import com.baby.potrait.generator.ai.resilience.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole generateImage flow (normalize, hash, style lookup, provider
+ * call, artifact decode, spool and result upload) with Cloudinary and the
+ * database stubbed in-process and Stability served by {@link StubStabilityServer},
+ * or with the CPU-only local provider in place of Stability.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenerateFlowBenchmark {
+
+    private static final long STYLE_ID = 1L;
+
+    @Param({"1", "4"})
+    public int samples;
+
+    /** Simulated provider latency; 0 isolates the service's own cost. */
+    @Param({"0"})
+    public long providerLatencyMillis;
+
+    @Param({StabilityGenerationProvider.NAME, LocalGenerationProvider.NAME})
+    public String provider;
+
+    private StubStabilityServer stability;
+    private ExecutorService executor;
+    private GenerateService generateService;
+    private MultipartFile photo;
+
+    @Setup
+    public void setUp() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        byte[] jpeg = photo(4000, 3000);
+        photo = new MockMultipartFile("file", "baby.jpg", "image/jpeg", jpeg);
+
+        ImageNormalizer normalizer = new ImageNormalizer("crop", "quality", 8,
+                new ImageEncoder("png", 4, 0.92f, registry), registry);
+        ImageService imageService = new ImageService(new OkHttpClient(), normalizer,
+                new ImageAdmission("jpeg,png", 256, 16384, 60_000_000, normalizer, registry), registry);
+        byte[] generated = imageService.resizeImage(jpeg, ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT);
+        stability = new StubStabilityServer(generated, providerLatencyMillis);
+
+        Style style = new Style(STYLE_ID, "Watercolor", List.of(), "a watercolor portrait of a baby",
+                stability.url(StubStabilityServer.SAMPLE_PATH));
+        StyleRepository styles = stub(StyleRepository.class, (method, args) -> switch (method) {
+            case "findById" -> Optional.of(style);
+            case "findAll" -> List.of(style);
+            default -> throw new UnsupportedOperationException(method);
+        });
+        PortraitRepository portraits = stub(PortraitRepository.class, (method, args) -> {
+            if (method.startsWith("findFirstBy")) return Optional.empty();
+            throw new UnsupportedOperationException(method);
+        });
+
+        UploadService uploads = new StubUploadService(registry);
+        StyleService styleService = new StyleService(styles, event -> { });
+        PortraitService portraitService = new PortraitService(portraits, uploads, styleService,
+                stub(PortraitVariantRepository.class, (method, args) -> {
+                    throw new UnsupportedOperationException(method);
+                }),
+                registry);
+
+        StabilityGenerationProvider stabilityProvider = new StabilityGenerationProvider(new OkHttpClient(),
+                new ProviderCallLimiter(registry, 1_000, 1_000, 64, 1, 64, 64, Duration.ofSeconds(30), 0.7, 2.0),
+                new CircuitBreaker("Stability AI", 1_000, Duration.ofSeconds(1), e -> false),
+                new RetryPolicy(1, Duration.ZERO, Duration.ZERO, e -> false),
+                64, 0.2, registry);
+        ReflectionTestUtils.setField(stabilityProvider, "stabilityApiKey", "bench");
+        ReflectionTestUtils.setField(stabilityProvider, "stabilityEndpoint",
+                stability.url(StubStabilityServer.GENERATION_PATH));
+        GenerationProviderRouter router = new GenerationProviderRouter(
+                List.of(stabilityProvider, new LocalGenerationProvider(0)),
+                provider, LocalGenerationProvider.NAME, false, registry);
+
+        executor = Executors.newFixedThreadPool(8);
+        generateService = new GenerateService(uploads, styleService, imageService,
+                new StyleReferenceCache(styles, imageService, 64L * 1024 * 1024, false),
+                portraitService,
+                new GenerationDeduplicator(),
+                executor,
+                router,
+                new GeneratedImageSpool(Files.createTempDirectory("bench-spool").toString(),
+                        Duration.ofHours(24), Long.MAX_VALUE),
+                new GenerationMetrics(registry));
+        ReflectionTestUtils.setField(generateService, "maxSamples", 4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stability.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public GenerationResult generateImage() throws Exception {
+        return generateService.generateImage(photo, STYLE_ID, samples);
+    }
+
+    private static byte[] photo(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.PINK, width, height, Color.DARK_GRAY));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    /** A repository whose methods answer by name; enough for the queries the flow makes. */
+    private static <T> T stub(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> type.getSimpleName() + " stub";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> answer.answer(method.getName(), args);
+                }));
+    }
+
+    /** Cloudinary stand-in: returns a URL without uploading anything. */
+    private static final class StubUploadService extends UploadService {
+
+        StubUploadService(MeterRegistry registry) {
+            super(null, null, null, DataSize.ofMegabytes(6), registry);
+        }
+
+        @Override
+        public String uploadFile(MultipartFile file) {
+            return "https://res.cloudinary.test/original/" + file.getOriginalFilename();
+        }
+
+        @Override
+        public String uploadImage(Path file, String publicId) {
+            return "https://res.cloudinary.test/generated/" + publicId;
+        }
+    }
+}
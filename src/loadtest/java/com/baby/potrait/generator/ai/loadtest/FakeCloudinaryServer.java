@@ -0,0 +1,114 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for Cloudinary's upload API and asset delivery. The SDK is
+ * pointed here through {@code upload_prefix}; uploads are kept in memory
+ * (oldest dropped past {@code maxAssets}) and served back from
+ * {@code /assets/<public_id>}. Chunked uploads are put back together from
+ * their {@code Content-Range} parts, the way the SDK's uploadLarge sends them.
+ */
+final class FakeCloudinaryServer extends FakeHttpServer {
+
+    private static final String ASSETS = "/assets/";
+
+    // bytes <start>-<end>/<total>, where the total is -1 until the last chunk
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(-?\\d+)");
+
+    private final Map<String, byte[]> assets;
+    private final Map<String, ByteArrayOutputStream> chunked = new HashMap<>();
+
+    FakeCloudinaryServer(int port, FaultProfile faults, int maxAssets) throws IOException {
+        super(port, faults);
+        this.assets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxAssets;
+            }
+        };
+    }
+
+    String assetUrl(String publicId) {
+        return "http://127.0.0.1:" + port() + ASSETS + publicId;
+    }
+
+    synchronized void put(String publicId, byte[] bytes) {
+        assets.put(publicId, bytes);
+    }
+
+    private synchronized byte[] get(String publicId) {
+        return assets.get(publicId);
+    }
+
+    /** Adds a chunk to its upload; returns the whole file once the last chunk is in, otherwise null. */
+    private synchronized byte[] addChunk(String uploadId, String range, byte[] chunk) {
+        ByteArrayOutputStream parts = chunked.computeIfAbsent(uploadId, id -> new ByteArrayOutputStream());
+        parts.writeBytes(chunk);
+        Matcher m = CONTENT_RANGE.matcher(range);
+        boolean last = !m.matches()
+                || (!"-1".equals(m.group(3)) && Long.parseLong(m.group(2)) + 1 >= Long.parseLong(m.group(3)));
+        if (!last) return null;
+        chunked.remove(uploadId);
+        return parts.toByteArray();
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        if ("GET".equals(exchange.getRequestMethod()) && path.startsWith(ASSETS)) {
+            // Delivery is a CDN in production; only uploads get injected faults
+            byte[] asset = get(path.substring(ASSETS.length()));
+            if (asset == null) {
+                json(exchange, 404, "{\"error\":{\"message\":\"Resource not found\"}}");
+            } else {
+                send(exchange, 200, "image/png", asset);
+            }
+            return;
+        }
+        if ("POST".equals(exchange.getRequestMethod()) && path.endsWith("/upload")) {
+            upload(exchange);
+            return;
+        }
+        json(exchange, 404, "{\"error\":{\"message\":\"Unknown endpoint\"}}");
+    }
+
+    private void upload(HttpExchange exchange) throws IOException {
+        MultipartForm form = MultipartForm.parse(exchange.getRequestHeaders().getFirst("Content-Type"),
+                readBody(exchange));
+        if (injectFault(exchange)) return;
+
+        byte[] file = form.bytes("file");
+        if (file == null) {
+            json(exchange, 400, "{\"error\":{\"message\":\"Missing required parameter - file\"}}");
+            return;
+        }
+        String range = exchange.getRequestHeaders().getFirst("Content-Range");
+        String uploadId = exchange.getRequestHeaders().getFirst("X-Unique-Upload-Id");
+        if (range != null && uploadId != null) {
+            file = addChunk(uploadId, range, file);
+            if (file == null) {
+                json(exchange, 200, "{\"done\":false}");
+                return;
+            }
+        }
+        String publicId = form.text("public_id");
+        if (publicId == null || publicId.isBlank()) {
+            publicId = UUID.randomUUID().toString();
+        }
+        put(publicId, file);
+
+        String url = assetUrl(publicId);
+        json(exchange, 200, "{\"public_id\":\"" + publicId + "\",\"version\":1,\"resource_type\":\"image\""
+                + ",\"bytes\":" + file.length + ",\"url\":\"" + url + "\",\"secure_url\":\"" + url + "\"}");
+    }
+}
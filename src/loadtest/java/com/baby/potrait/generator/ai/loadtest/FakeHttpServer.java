@@ -0,0 +1,90 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Base for the local stand-ins: a JDK HttpServer on a fixed loopback port,
+ * one virtual thread per exchange, so injected latency costs no platform
+ * threads and never competes with the application's own request threads.
+ */
+abstract class FakeHttpServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeHttpServer.class);
+
+    protected final FaultProfile faults;
+    private final HttpServer server;
+
+    FakeHttpServer(int port, FaultProfile faults) throws IOException {
+        this.faults = faults;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            try (exchange) {
+                handle(exchange);
+            } catch (Exception e) {
+                log.warn("{} failed: {}", getClass().getSimpleName(), e.getMessage());
+            }
+        });
+        server.start();
+    }
+
+    protected abstract void handle(HttpExchange exchange) throws IOException;
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Applies the fault profile: waits out the latency, then answers 429 inside
+     * a throttle burst or 500 on an injected error. Returns true when it answered.
+     */
+    protected boolean injectFault(HttpExchange exchange) throws IOException {
+        faults.delay();
+        long throttled = faults.throttledSeconds();
+        if (throttled > 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(throttled));
+            json(exchange, 429, "{\"message\":\"Too many requests (injected burst)\"}");
+            return true;
+        }
+        if (faults.fail()) {
+            json(exchange, 500, "{\"message\":\"Injected failure\"}");
+            return true;
+        }
+        return false;
+    }
+
+    protected static byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return in.readAllBytes();
+        }
+    }
+
+    protected static void json(HttpExchange exchange, int status, String body) throws IOException {
+        send(exchange, status, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,49 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Stand-in for the Stability image-to-image endpoint. Answers with
+ * {@code samples} artifacts that echo the init image, so response sizes and
+ * decode costs match a real generation of the same input.
+ */
+final class FakeStabilityServer extends FakeHttpServer {
+
+    FakeStabilityServer(int port, FaultProfile faults) throws IOException {
+        super(port, faults);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            json(exchange, 405, "{\"message\":\"Method not allowed\"}");
+            return;
+        }
+
+        MultipartForm form = MultipartForm.parse(exchange.getRequestHeaders().getFirst("Content-Type"),
+                readBody(exchange));
+        if (injectFault(exchange)) return;
+
+        byte[] initImage = form.bytes("init_image");
+        if (initImage == null || initImage.length == 0) {
+            json(exchange, 400, "{\"message\":\"init_image is required\"}");
+            return;
+        }
+        String samplesValue = form.text("samples");
+        int samples = samplesValue == null ? 1 : Integer.parseInt(samplesValue.trim());
+
+        String base64 = Base64.getEncoder().encodeToString(initImage);
+        StringBuilder body = new StringBuilder(samples * (base64.length() + 64) + 16).append("{\"artifacts\":[");
+        for (int i = 0; i < samples; i++) {
+            if (i > 0) body.append(',');
+            body.append("{\"base64\":\"").append(base64).append("\",\"seed\":").append(i)
+                    .append(",\"finishReason\":\"SUCCESS\"}");
+        }
+        body.append("]}");
+        send(exchange, 200, "application/json", body.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
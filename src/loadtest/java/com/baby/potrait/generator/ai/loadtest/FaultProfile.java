@@ -0,0 +1,63 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency, random failures and periodic 429 bursts injected by a fake
+ * server, read from {@code <prefix>.latency}, {@code .latency-jitter},
+ * {@code .error-rate}, {@code .throttle-every} and {@code .throttle-for}.
+ */
+final class FaultProfile {
+
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final long throttleEveryMillis;
+    private final long throttleForMillis;
+
+    FaultProfile(Duration latency, Duration jitter, double errorRate, Duration throttleEvery, Duration throttleFor) {
+        this.latencyMillis = latency.toMillis();
+        this.jitterMillis = jitter.toMillis();
+        this.errorRate = errorRate;
+        this.throttleEveryMillis = throttleEvery.toMillis();
+        this.throttleForMillis = throttleFor.toMillis();
+    }
+
+    static FaultProfile from(Environment env, String prefix) {
+        return new FaultProfile(
+                env.getProperty(prefix + ".latency", Duration.class, Duration.ZERO),
+                env.getProperty(prefix + ".latency-jitter", Duration.class, Duration.ZERO),
+                env.getProperty(prefix + ".error-rate", Double.class, 0.0),
+                env.getProperty(prefix + ".throttle-every", Duration.class, Duration.ZERO),
+                env.getProperty(prefix + ".throttle-for", Duration.class, Duration.ZERO));
+    }
+
+    /** Sleeps for the configured latency plus a uniform share of the jitter. */
+    void delay() {
+        long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean fail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    /**
+     * Seconds left in the current 429 burst, or 0 outside one. A burst opens
+     * for {@code throttle-for} at the start of every {@code throttle-every} window.
+     */
+    long throttledSeconds() {
+        if (throttleEveryMillis <= 0 || throttleForMillis <= 0) return 0;
+        long intoWindow = System.currentTimeMillis() % throttleEveryMillis;
+        if (intoWindow >= throttleForMillis) return 0;
+        return Math.max(1, (throttleForMillis - intoWindow + 999) / 1000);
+    }
+}
@@ -0,0 +1,270 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Open-loop load generator: issues requests at a fixed target rate whether or
+ * not earlier ones have finished, so a slow server shows up as latency and
+ * errors instead of silently lowering the offered load.
+ *
+ * <pre>
+ * mvn -Ploadtest test-compile exec:java -Dexec.args="--rate=2 --duration=120s --mix=generate:1,download:3,styles:6"
+ * </pre>
+ *
+ * Options: {@code --base-url} (http://localhost:8080), {@code --rate} requests per
+ * second (2), {@code --duration} (60s), {@code --mix} endpoint weights, {@code --image}
+ * photo to upload (a synthetic 12 MP JPEG by default), {@code --styles} style ids 1..n to
+ * pick from (3, matching {@code loadtest.styles}), {@code --timeout} per request (180s).
+ */
+public class LoadDriver {
+
+    private static final String GENERATE = "generate";
+    private static final String DOWNLOAD = "download";
+    private static final String STYLES = "styles";
+
+    private final String baseUrl;
+    private final double rate;
+    private final Duration duration;
+    private final Duration timeout;
+    private final Map<String, Integer> mix;
+    private final byte[] image;
+    private final int styleCount;
+
+    private final HttpClient http;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    // Portrait ids are sequential in the fresh H2 database, so successful generations bound the ids to download
+    private final AtomicLong generated = new AtomicLong();
+
+    LoadDriver(String baseUrl, double rate, Duration duration, Duration timeout,
+               Map<String, Integer> mix, byte[] image, int styleCount) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.rate = rate;
+        this.duration = duration;
+        this.timeout = timeout;
+        this.mix = mix;
+        this.image = image;
+        this.styleCount = styleCount;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        mix.keySet().forEach(endpoint -> stats.put(endpoint, new Stats()));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+
+        byte[] image = options.containsKey("image")
+                ? Files.readAllBytes(Path.of(options.get("image")))
+                : syntheticPhoto();
+
+        LoadDriver driver = new LoadDriver(
+                options.getOrDefault("base-url", "http://localhost:8080"),
+                Double.parseDouble(options.getOrDefault("rate", "2")),
+                parseDuration(options.getOrDefault("duration", "60s")),
+                parseDuration(options.getOrDefault("timeout", "180s")),
+                parseMix(options.getOrDefault("mix", "generate:1,download:3,styles:6")),
+                image,
+                Integer.parseInt(options.getOrDefault("styles", "3")));
+        driver.run();
+    }
+
+    void run() throws InterruptedException {
+        System.out.printf("Offering %.2f req/s for %s against %s, mix %s%n", rate, duration, baseUrl, mix);
+
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        long periodNanos = (long) (1_000_000_000L / rate);
+        long started = System.nanoTime();
+
+        ticker.scheduleAtFixedRate(() -> workers.execute(this::issueOne), 0, periodNanos, TimeUnit.NANOSECONDS);
+        ticker.scheduleAtFixedRate(() -> report("progress", System.nanoTime() - started), 10, 10, TimeUnit.SECONDS);
+
+        Thread.sleep(duration.toMillis());
+        ticker.shutdownNow();
+
+        // Let in-flight requests finish (or time out) so they are counted
+        workers.shutdown();
+        workers.awaitTermination(timeout.toMillis() + 5_000, TimeUnit.MILLISECONDS);
+        report("final", System.nanoTime() - started);
+        System.exit(0);
+    }
+
+    private void issueOne() {
+        String endpoint = pick();
+        if (DOWNLOAD.equals(endpoint) && generated.get() == 0) {
+            // Nothing to download yet
+            endpoint = STYLES;
+        }
+
+        HttpRequest request = switch (endpoint) {
+            case GENERATE -> generateRequest();
+            case DOWNLOAD -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/download/"
+                    + ThreadLocalRandom.current().nextLong(1, generated.get() + 1))).timeout(timeout).GET().build();
+            default -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/styles")).timeout(timeout).GET().build();
+        };
+
+        Stats endpointStats = stats.computeIfAbsent(endpoint, k -> new Stats());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            endpointStats.record(System.nanoTime() - start, response.statusCode());
+            if (GENERATE.equals(endpoint) && response.statusCode() == 200) {
+                generated.incrementAndGet();
+            }
+        } catch (IOException e) {
+            endpointStats.record(System.nanoTime() - start, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpRequest generateRequest() {
+        long styleId = ThreadLocalRandom.current().nextLong(1, styleCount + 1);
+        String boundary = "loadtest-" + UUID.randomUUID();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 512);
+        writeText(body, boundary, "styleId", String.valueOf(styleId));
+        writeAscii(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"baby.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n");
+        body.writeBytes(image);
+        writeAscii(body, "\r\n--" + boundary + "--\r\n");
+
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/generate"))
+                .timeout(timeout)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private String pick() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) return entry.getKey();
+        }
+        return STYLES;
+    }
+
+    private void report(String label, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder out = new StringBuilder(String.format("%n[%s] after %.0fs%n", label, seconds));
+        out.append(String.format("%-9s %8s %9s %8s %9s %9s %9s %9s  %s%n",
+                "endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "statuses"));
+        for (String endpoint : mix.keySet()) {
+            Stats s = stats.get(endpoint);
+            long[] sorted = s.latencies();
+            long count = sorted.length;
+            out.append(String.format("%-9s %8d %9.2f %7.1f%% %9.1f %9.1f %9.1f %9.1f  %s%n",
+                    endpoint, count, count / seconds,
+                    count == 0 ? 0.0 : 100.0 * s.errors.get() / count,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    count == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6,
+                    s.statuses));
+        }
+        System.out.print(out);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private static void writeText(ByteArrayOutputStream body, String boundary, String name, String value) {
+        writeAscii(body, "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+    }
+
+    private static void writeAscii(ByteArrayOutputStream body, String text) {
+        body.writeBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            String endpoint = pair[0].trim();
+            if (!List.of(GENERATE, DOWNLOAD, STYLES).contains(endpoint)) {
+                throw new IllegalArgumentException("Unknown endpoint in mix: " + endpoint);
+            }
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) mix.put(endpoint, weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("Mix has no endpoints: " + spec);
+        return mix;
+    }
+
+    static Duration parseDuration(String value) {
+        String v = value.trim().toLowerCase();
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        if (v.endsWith("s")) return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+        if (v.endsWith("m")) return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+        return Duration.ofSeconds(Long.parseLong(v));
+    }
+
+    /** A 12 MP JPEG, roughly what a phone uploads. */
+    private static byte[] syntheticPhoto() throws IOException {
+        BufferedImage photo = new BufferedImage(4000, 3000, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = photo.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.PINK, 4000, 3000, Color.DARK_GRAY));
+        g.fillRect(0, 0, 4000, 3000);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(photo, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /** Latencies and outcomes of one endpoint. Non-2xx and transport failures count as errors. */
+    private static final class Stats {
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+        private final Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+
+        void record(long nanos, int status) {
+            latencies.add(nanos);
+            statuses.computeIfAbsent(status, k -> new AtomicLong()).incrementAndGet();
+            if (status < 200 || status >= 300) errors.incrementAndGet();
+        }
+
+        long[] latencies() {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import com.baby.potrait.generator.ai.Application;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Runs the application against local fakes of Stability and Cloudinary and
+ * an in-memory H2 database: {@code mvn -Ploadtest spring-boot:test-run}.
+ */
+public class LoadTestApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.from(Application::main)
+                .with(LoadTestConfig.class)
+                .withAdditionalProfiles("loadtest")
+                .run(args);
+    }
+}
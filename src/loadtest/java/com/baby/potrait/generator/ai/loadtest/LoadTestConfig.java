@@ -0,0 +1,85 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.repository.StyleRepository;
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+@TestConfiguration(proxyBeanMethods = false)
+public class LoadTestConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestConfig.class);
+
+    @Bean(destroyMethod = "close")
+    FakeStabilityServer fakeStabilityServer(Environment env,
+                                            @Value("${loadtest.stability.port:18081}") int port) throws IOException {
+        return new FakeStabilityServer(port, FaultProfile.from(env, "loadtest.stability"));
+    }
+
+    @Bean(destroyMethod = "close")
+    FakeCloudinaryServer fakeCloudinaryServer(Environment env,
+                                              @Value("${loadtest.cloudinary.port:18082}") int port,
+                                              @Value("${loadtest.cloudinary.max-assets:2000}") int maxAssets)
+            throws IOException {
+        return new FakeCloudinaryServer(port, FaultProfile.from(env, "loadtest.cloudinary"), maxAssets);
+    }
+
+    /** Replaces CloudinaryConfig's bean (inactive under this profile); the SDK uploads to the fake instead. */
+    @Bean
+    Cloudinary cloudinary(FakeCloudinaryServer fakeCloudinary,
+                          @Value("${cloudinary.timeout-seconds:60}") int timeoutSeconds) {
+        return new Cloudinary(ObjectUtils.asMap(
+                "cloud_name", "loadtest",
+                "api_key", "loadtest",
+                "api_secret", "loadtest",
+                "upload_prefix", "http://127.0.0.1:" + fakeCloudinary.port(),
+                "timeout", timeoutSeconds
+        ));
+    }
+
+    /** Seeds styles whose sample images live on the fake Cloudinary. */
+    @Bean
+    ApplicationRunner seedLoadTestStyles(StyleRepository styleRepository, FakeCloudinaryServer fakeCloudinary,
+                                         @Value("${loadtest.styles:3}") int styles) {
+        return args -> {
+            if (styleRepository.count() > 0) return;
+
+            Color[] palette = {Color.PINK, Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.GREEN};
+            for (int i = 0; i < styles; i++) {
+                String publicId = "style-sample-" + i;
+                fakeCloudinary.put(publicId, sampleImage(palette[i % palette.length]));
+                styleRepository.save(new Style(null, "Load Test Style " + (i + 1), null,
+                        "A load test portrait of a baby, variant " + (i + 1),
+                        fakeCloudinary.assetUrl(publicId)));
+            }
+            log.info("Seeded {} load test styles", styles);
+        };
+    }
+
+    private static byte[] sampleImage(Color color) throws IOException {
+        BufferedImage image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, color, 1024, 1024, Color.WHITE));
+        g.fillRect(0, 0, 1024, 1024);
+        g.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
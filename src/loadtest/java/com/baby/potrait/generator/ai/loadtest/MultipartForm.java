@@ -0,0 +1,77 @@
+package com.baby.potrait.generator.ai.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal multipart/form-data reader for the fake servers: splits the body
+ * on the boundary and keeps each part's raw bytes by field name.
+ */
+final class MultipartForm {
+
+    // name="..." but not filename="..."
+    private static final Pattern FIELD_NAME = Pattern.compile("(?<![A-Za-z])name=\"([^\"]*)\"");
+
+    private final Map<String, byte[]> parts = new HashMap<>();
+
+    private MultipartForm() {
+    }
+
+    static MultipartForm parse(String contentType, byte[] body) {
+        MultipartForm form = new MultipartForm();
+        int at = contentType == null ? -1 : contentType.indexOf("boundary=");
+        if (at < 0) return form;
+
+        String boundaryValue = contentType.substring(at + "boundary=".length()).split(";")[0].replace("\"", "").trim();
+        byte[] delimiter = ("--" + boundaryValue).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] headerEnd = "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        int start = indexOf(body, delimiter, 0);
+        while (start >= 0) {
+            int headersStart = start + delimiter.length + 2;
+            int next = indexOf(body, delimiter, headersStart);
+            if (next < 0) break;
+
+            int contentStart = indexOf(body, headerEnd, headersStart);
+            if (contentStart < 0 || contentStart > next) break;
+            String headers = new String(body, headersStart, contentStart - headersStart, StandardCharsets.ISO_8859_1);
+            String name = fieldName(headers);
+            if (name != null) {
+                // The part's content ends with the CRLF that precedes the next delimiter
+                byte[] content = new byte[Math.max(0, next - 2 - (contentStart + 4))];
+                System.arraycopy(body, contentStart + 4, content, 0, content.length);
+                form.parts.put(name, content);
+            }
+            start = next;
+        }
+        return form;
+    }
+
+    byte[] bytes(String name) {
+        return parts.get(name);
+    }
+
+    String text(String name) {
+        byte[] value = parts.get(name);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static String fieldName(String headers) {
+        Matcher matcher = FIELD_NAME.matcher(headers);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = Math.max(0, from); i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
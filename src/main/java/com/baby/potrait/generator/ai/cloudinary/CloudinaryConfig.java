@@ -1,7 +1,9 @@
 package com.baby.potrait.generator.ai.cloudinary;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
@@ -9,8 +11,13 @@ import com.cloudinary.utils.ObjectUtils;
 import io.github.cdimascio.dotenv.Dotenv;
 
 @Configuration
+@Profile("!loadtest")
 public class CloudinaryConfig {
 
+    // The SDK talks to Cloudinary through its own pooled Apache HttpClient; only the timeout is exposed
+    @Value("${cloudinary.timeout-seconds:60}")
+    private int timeoutSeconds;
+
     @Bean
     public Cloudinary cloudinary() {
         Dotenv dotenv = Dotenv.load();
@@ -18,7 +25,8 @@ public class CloudinaryConfig {
         return new Cloudinary(ObjectUtils.asMap(
                 "cloud_name", dotenv.get("CLOUDINARY_CLOUD_NAME"),
                 "api_key", dotenv.get("CLOUDINARY_API_KEY"),
-                "api_secret", dotenv.get("CLOUDINARY_API_SECRET")
+                "api_secret", dotenv.get("CLOUDINARY_API_SECRET"),
+                "timeout", timeoutSeconds
         ));
     }
     
@@ -1,38 +1,70 @@
 package com.baby.potrait.generator.ai.controller;
 
-import java.io.InputStream;
-import java.net.URL;
-
 import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
 import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.job.GenerationJobService;
+import com.baby.potrait.generator.ai.job.GenerationJobStatus;
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import com.baby.potrait.generator.ai.service.BatchGenerationService;
 import com.baby.potrait.generator.ai.service.GenerateService;
+import com.baby.potrait.generator.ai.service.GenerationResult;
+import com.baby.potrait.generator.ai.service.PortraitDownloadService;
+import com.baby.potrait.generator.ai.service.PortraitFileCache;
 import com.baby.potrait.generator.ai.service.PortraitService;
 import com.baby.potrait.generator.ai.service.StyleService;
+import com.baby.potrait.generator.ai.service.UpstreamImageResource;
 import com.baby.potrait.generator.ai.service.UploadService;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
 @Controller
 public class PortraitController {
 
+    private static final Logger log = LoggerFactory.getLogger(PortraitController.class);
+
+    private static final String CACHE_LEASE_ATTRIBUTE = PortraitController.class.getName() + ".cacheLease";
+    private static final String UPSTREAM_RESPONSE_ATTRIBUTE = PortraitController.class.getName() + ".upstreamResponse";
+
     private final PortraitService portraitService;
     private final StyleService styleService;
     private final GenerateService generateService;
     private final UploadService uploadService;
+    private final GenerationJobService generationJobService;
+    private final PortraitDownloadService portraitDownloadService;
+    private final BatchGenerationService batchGenerationService;
 
     public PortraitController(PortraitService portraitService,
                               StyleService styleService,
                               GenerateService generateService,
-                              UploadService uploadService) {
+                              UploadService uploadService,
+                              GenerationJobService generationJobService,
+                              PortraitDownloadService portraitDownloadService,
+                              BatchGenerationService batchGenerationService) {
         this.portraitService = portraitService;
         this.styleService = styleService;
         this.generateService = generateService;
         this.uploadService = uploadService;
+        this.generationJobService = generationJobService;
+        this.portraitDownloadService = portraitDownloadService;
+        this.batchGenerationService = batchGenerationService;
     }
 
     @GetMapping("/")
@@ -59,34 +91,113 @@ public class PortraitController {
 
     @PostMapping("/api/generate")
     @ResponseBody
-    public ResponseEntity<String> generateImage(
+    public ResponseEntity<?> generateImage(
             @RequestParam("file") MultipartFile file,
-            @RequestParam("styleId") Long styleId) {
+            @RequestParam("styleId") Long styleId,
+            @RequestParam(value = "samples", defaultValue = "1") int samples) {
         try {
-            String generatedUrl = generateService.generateImage(file, styleId);
+            GenerationResult result = generateService.generateImage(file, styleId, samples);
 
             Style style = styleService.getStyleById(styleId)
                     .orElseThrow(() -> new RuntimeException("Style not found"));
 
             Portrait portrait = new Portrait();
             portrait.setUploadedFileName(file.getOriginalFilename());
-            portrait.setGeneratedImageUrl(generatedUrl);
+            result.applyTo(portrait);
             portrait.setStyle(style);
+            portrait.setStatus(PortraitStatus.COMPLETED);
+
+            portraitService.saveWithVariants(portrait, result.getGeneratedUrls());
 
-            portraitService.save(portrait);
+            // Return Cloudinary URL directly, or every variant when several were asked for
+            if (samples > 1) {
+                return ResponseEntity.ok(result.getGeneratedUrls());
+            }
+            return ResponseEntity.ok(result.getGeneratedUrl());
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
 
-            // Return Cloudinary URL directly
-            return ResponseEntity.ok(generatedUrl);
+        } catch (ProviderBusyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Generation failed for style {}", styleId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/portraits")
+    @ResponseBody
+    public ResponseEntity<?> getPortraitHistory(
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size) {
+        try {
+            return ResponseEntity.ok(portraitService.getHistory(userId, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/portraits/{id}/variants")
+    @ResponseBody
+    public ResponseEntity<List<String>> getVariants(@PathVariable Long id) {
+        if (portraitService.getPortraitById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(portraitService.getVariantUrls(id));
+    }
 
+    @PostMapping("/api/generate/batch")
+    @ResponseBody
+    public ResponseEntity<?> generateBatch(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("styleIds") List<String> styleIds) {
+        try {
+            return ResponseEntity.ok(batchGenerationService.generateBatch(file, styleIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Batch generation failed", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error: " + e.getMessage());
         }
     }
 
+    @PostMapping("/api/generate/jobs")
+    @ResponseBody
+    public ResponseEntity<?> submitGenerationJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("styleId") Long styleId) {
+        try {
+            GenerationJobStatus job = generationJobService.submit(file, styleId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/generate/jobs/" + job.getJobId())
+                    .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Could not queue generation job for style {}", styleId, e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/api/generate/jobs/{id}")
+    @ResponseBody
+    public ResponseEntity<GenerationJobStatus> getGenerationJob(@PathVariable Long id) {
+        return generationJobService.getStatus(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/api/download/{id}")
-    public ResponseEntity<byte[]> downloadImage(@PathVariable Long id) {
+    public ResponseEntity<Resource> downloadImage(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                  WebRequest webRequest) {
         try {
             Portrait portrait = portraitService.getPortraitById(id)
                     .orElseThrow(() -> new RuntimeException("Portrait not found"));
@@ -96,19 +207,64 @@ public class PortraitController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
 
-            try (InputStream in = new URL(fileUrl).openStream()) {
-                byte[] imageBytes = in.readAllBytes();
+            String etag = portraitDownloadService.etagFor(portrait);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.IMAGE_PNG);
+            headers.set(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"baby-portrait-" + id + ".png\"");
+            headers.setETag(etag);
+            headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(30)).cachePrivate());
 
-                HttpHeaders headers = new HttpHeaders();
-                headers.setContentType(MediaType.IMAGE_PNG);
-                headers.set(HttpHeaders.CONTENT_DISPOSITION,
-                        "attachment; filename=\"baby-portrait-" + id + ".png\"");
-                headers.setContentLength(imageBytes.length);
+            if (portraitDownloadService.isCacheEnabled()) {
+                // Spring answers Range requests on file resources itself
+                PortraitFileCache.Lease lease = portraitDownloadService.cachedImage(portrait);
+                // The body is written after this returns; keep the file from being evicted until the request completes
+                webRequest.registerDestructionCallback(CACHE_LEASE_ATTRIBUTE, lease::close,
+                        RequestAttributes.SCOPE_REQUEST);
+                return new ResponseEntity<>(new FileSystemResource(lease.path()), headers, HttpStatus.OK);
+            }
 
-                return new ResponseEntity<>(imageBytes, headers, HttpStatus.OK);
+            Response upstream;
+            try {
+                upstream = portraitDownloadService.openUpstream(fileUrl, range);
+            } catch (IOException e) {
+                log.warn("Fetching portrait {} from storage failed: {}", id, e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+            }
+            // Spring closes the body once it is streamed, but not when it never reads it (HEAD, errors)
+            webRequest.registerDestructionCallback(UPSTREAM_RESPONSE_ATTRIBUTE, () -> {
+                if (upstream.body() != null) upstream.close();
+            }, RequestAttributes.SCOPE_REQUEST);
+            if (upstream.code() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                // The client asked for a range past the end; storage says how long the image really is
+                HttpHeaders rangeHeaders = new HttpHeaders();
+                String contentRange = upstream.header(HttpHeaders.CONTENT_RANGE);
+                if (contentRange != null) {
+                    rangeHeaders.set(HttpHeaders.CONTENT_RANGE, contentRange);
+                }
+                return new ResponseEntity<>(rangeHeaders, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+            if (upstream.code() == HttpStatus.NOT_FOUND.value() || upstream.code() == HttpStatus.GONE.value()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            if (!upstream.isSuccessful() || upstream.body() == null) {
+                log.warn("Storage answered {} for portrait {}", upstream.code(), id);
+                // Only a storage outage is a bad gateway; other answers mean the request we sent was wrong
+                return ResponseEntity.status(upstream.code() >= 500
+                        ? HttpStatus.BAD_GATEWAY : HttpStatus.INTERNAL_SERVER_ERROR).build();
+            }
+            if (upstream.code() == HttpStatus.PARTIAL_CONTENT.value()) {
+                headers.set(HttpHeaders.CONTENT_RANGE, upstream.header(HttpHeaders.CONTENT_RANGE));
+                headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+                return new ResponseEntity<>(new UpstreamImageResource(upstream), headers, HttpStatus.PARTIAL_CONTENT);
             }
+            return new ResponseEntity<>(new UpstreamImageResource(upstream), headers, HttpStatus.OK);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Download of portrait {} failed", id, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
@@ -1,18 +1,21 @@
 package com.baby.potrait.generator.ai.controller;
 
-import java.util.List;
-
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.baby.potrait.generator.ai.entity.Portrait;
 import com.baby.potrait.generator.ai.entity.Style;
 import com.baby.potrait.generator.ai.service.PortraitService;
+import com.baby.potrait.generator.ai.service.StyleCatalog;
 import com.baby.potrait.generator.ai.service.StyleService;
 
 @RestController
@@ -21,15 +24,26 @@ public class StyleController {
 
     private final StyleService styleService;
     private final PortraitService portraitService;
+    private final StyleCatalog styleCatalog;
 
-    public StyleController(StyleService styleService, PortraitService portraitService) {
+    public StyleController(StyleService styleService, PortraitService portraitService, StyleCatalog styleCatalog) {
         this.styleService = styleService;
         this.portraitService = portraitService;
+        this.styleCatalog = styleCatalog;
     }
 
     @GetMapping
-    public ResponseEntity<List<Style>> getAllStyles() {
-        return ResponseEntity.ok(styleService.getAllStyles());
+    public ResponseEntity<byte[]> getAllStyles(WebRequest webRequest) {
+        StyleCatalog.Snapshot catalog = styleCatalog.current();
+        // Browsers revalidate on every page load and normally get a 304 back
+        if (webRequest.checkNotModified(catalog.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(catalog.etag())
+                .cacheControl(CacheControl.noCache().cachePublic())
+                .body(catalog.json());
     }
 
     @PostMapping
@@ -37,6 +51,11 @@ public class StyleController {
         return ResponseEntity.ok(styleService.createStyle(style));
     }
 
+    @PutMapping("/{id}")
+    public ResponseEntity<Style> updateStyle(@PathVariable Long id, @RequestBody Style style) {
+        return ResponseEntity.ok(styleService.updateStyle(id, style));
+    }
+
     @PostMapping("/{portraitId}/select-style/{styleId}")
     public ResponseEntity<Portrait> selectStyle(
         @PathVariable Long portraitId,
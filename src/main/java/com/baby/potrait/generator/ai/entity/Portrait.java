@@ -1,11 +1,17 @@
 package com.baby.potrait.generator.ai.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
-@Table(name = "portraits")
+@Table(name = "portraits", indexes = {
+        @Index(name = "idx_portraits_dedup", columnList = "content_hash, style_id, generation_params"),
+        @Index(name = "idx_portraits_created", columnList = "created_at, id"),
+        @Index(name = "idx_portraits_user_created", columnList = "user_id, created_at, id")
+})
 public class Portrait {
 
     @Id
@@ -21,6 +27,19 @@ public class Portrait {
     @Column(name = "generated_image_url")
     private String generatedImageUrl;
 
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "generation_params", length = 100)
+    private String generationParams;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private PortraitStatus status;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
     @CreationTimestamp
     @Column(name = "created_at")
     private LocalDateTime createdAt;
@@ -33,6 +52,11 @@ public class Portrait {
     @JoinColumn(name = "style_id")
     private Style style;
 
+    @OneToMany(mappedBy = "portrait", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("sampleIndex")
+    @JsonIgnore
+    private List<PortraitVariant> variants;
+
     public Portrait() {
         
     }
@@ -102,4 +126,44 @@ public class Portrait {
     public void setUploadedFileUrl(String uploadedFileUrl) {
         this.uploadedFileUrl = uploadedFileUrl;
     }
+
+    public PortraitStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PortraitStatus status) {
+        this.status = status;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getGenerationParams() {
+        return generationParams;
+    }
+
+    public void setGenerationParams(String generationParams) {
+        this.generationParams = generationParams;
+    }
+
+    public List<PortraitVariant> getVariants() {
+        return variants;
+    }
+
+    public void setVariants(List<PortraitVariant> variants) {
+        this.variants = variants;
+    }
 }
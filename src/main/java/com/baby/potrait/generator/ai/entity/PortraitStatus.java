@@ -0,0 +1,8 @@
+package com.baby.potrait.generator.ai.entity;
+
+public enum PortraitStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,68 @@
+package com.baby.potrait.generator.ai.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "portrait_variants", indexes = {
+        @Index(name = "idx_portrait_variants_portrait", columnList = "portrait_id")
+})
+public class PortraitVariant {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "portrait_id", nullable = false)
+    @JsonIgnore
+    private Portrait portrait;
+
+    @Column(name = "sample_index", nullable = false)
+    private int sampleIndex;
+
+    @Column(name = "image_url")
+    private String imageUrl;
+
+    public PortraitVariant() {
+
+    }
+
+    public PortraitVariant(Portrait portrait, int sampleIndex, String imageUrl) {
+        this.portrait = portrait;
+        this.sampleIndex = sampleIndex;
+        this.imageUrl = imageUrl;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Portrait getPortrait() {
+        return portrait;
+    }
+
+    public void setPortrait(Portrait portrait) {
+        this.portrait = portrait;
+    }
+
+    public int getSampleIndex() {
+        return sampleIndex;
+    }
+
+    public void setSampleIndex(int sampleIndex) {
+        this.sampleIndex = sampleIndex;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+}
@@ -0,0 +1,68 @@
+package com.baby.potrait.generator.ai.executor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the blocking work inside a generation (Cloudinary uploads,
+ * downloads, provider calls). With {@code generation.executor.virtual-threads}
+ * every task gets its own virtual thread; otherwise a bounded platform pool is used.
+ * Either way tasks run with the submitting thread's logging context.
+ */
+@Configuration
+public class GenerationExecutorConfig {
+
+    @Value("${generation.executor.virtual-threads:${spring.threads.virtual.enabled:false}}")
+    private boolean virtualThreads;
+
+    @Value("${generation.executor.pool-size:32}")
+    private int poolSize;
+
+    @Value("${generation.executor.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${generation.batch.executor.pool-size:8}")
+    private int batchPoolSize;
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService generationExecutor() {
+        return executor("generation", poolSize, queueCapacity);
+    }
+
+    /**
+     * Runs the per-style workers of a batch. They block on generation stages,
+     * which run on {@link #generationExecutor()}, so they must not take threads
+     * from that pool: a full pool of waiting workers would leave none for the
+     * stages they wait on.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService batchExecutor() {
+        return executor("generation-batch", batchPoolSize, queueCapacity);
+    }
+
+    private ExecutorService executor(String name, int size, int queue) {
+        if (virtualThreads) {
+            return new MdcPropagatingExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-vt-", 0).factory()));
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Callers run overflow themselves; none of them is a thread of the same pool
+        return new MdcPropagatingExecutorService(new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queue), factory, new ThreadPoolExecutor.CallerRunsPolicy()));
+    }
+}
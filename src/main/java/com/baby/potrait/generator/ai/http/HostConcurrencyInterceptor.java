@@ -0,0 +1,98 @@
+package com.baby.potrait.generator.ai.http;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps concurrent calls per host. The permit is held until the response body
+ * is closed, because a streamed download keeps its connection busy until then.
+ * It is released at once when the exchange itself fails, and a body still open
+ * after {@code maxHold} is closed and its permit reclaimed, so a response a
+ * caller forgot to close cannot starve the host for good.
+ */
+class HostConcurrencyInterceptor implements Interceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(HostConcurrencyInterceptor.class);
+
+    private final int maxPerHost;
+    private final long acquireTimeoutMillis;
+    private final long maxHoldNanos;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    HostConcurrencyInterceptor(int maxPerHost, Duration acquireTimeout, Duration maxHold) {
+        this.maxPerHost = maxPerHost;
+        this.acquireTimeoutMillis = acquireTimeout.toMillis();
+        this.maxHoldNanos = maxHold.toNanos();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        String host = chain.request().url().host();
+        Host slots = hosts.computeIfAbsent(host, h -> new Host(maxPerHost));
+
+        try {
+            if (!slots.permits.tryAcquire()) {
+                reclaimExpired(host, slots);
+                if (!slots.permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Too many concurrent requests to " + host);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection slot to " + host);
+        }
+
+        Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            slots.permits.release();
+            throw e;
+        }
+        if (response.body() == null) {
+            slots.permits.release();
+            return response;
+        }
+
+        ReleasingResponseBody body = new ReleasingResponseBody(response.body(), closed -> {
+            slots.held.remove(closed);
+            slots.permits.release();
+        });
+        slots.held.add(body);
+        return response.newBuilder().body(body).build();
+    }
+
+    /**
+     * Closes bodies held past {@code maxHold}. The call timeout has already
+     * failed any read on them by then, so only leaked responses are affected.
+     */
+    private void reclaimExpired(String host, Host slots) {
+        long now = System.nanoTime();
+        for (ReleasingResponseBody body : slots.held) {
+            if (now - body.getOpenedAt() > maxHoldNanos) {
+                log.warn("Reclaiming a connection slot to {} from a response body that was never closed", host);
+                body.close();
+            }
+        }
+    }
+
+    private static final class Host {
+        final Semaphore permits;
+        final Set<ReleasingResponseBody> held = ConcurrentHashMap.newKeySet();
+
+        Host(int maxPerHost) {
+            this.permits = new Semaphore(maxPerHost);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.baby.potrait.generator.ai.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Records {@code http.client.outbound} timings tagged by host, method and status.
+ * The timer stops when headers arrive; body streaming time is not included.
+ */
+class HostMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry registry;
+
+    HostMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Timer.Sample sample = Timer.start(registry);
+        String status = "IO_ERROR";
+        try {
+            Response response = chain.proceed(request);
+            status = String.valueOf(response.code());
+            return response;
+        } finally {
+            sample.stop(Timer.builder("http.client.outbound")
+                    .tag("host", request.url().host())
+                    .tag("method", request.method())
+                    .tag("status", status)
+                    .register(registry));
+        }
+    }
+}
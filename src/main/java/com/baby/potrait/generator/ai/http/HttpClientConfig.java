@@ -0,0 +1,128 @@
+package com.baby.potrait.generator.ai.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single outbound HTTP stack for the service layer. Every client handed out
+ * here shares one connection pool and dispatcher, so keep-alive connections
+ * and TLS sessions are reused across Stability calls and image downloads.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${http.client.pool.max-idle-connections:32}")
+    private int maxIdleConnections;
+
+    @Value("${http.client.pool.keep-alive:5m}")
+    private Duration keepAlive;
+
+    @Value("${http.client.max-requests:128}")
+    private int maxRequests;
+
+    @Value("${http.client.max-requests-per-host:32}")
+    private int maxRequestsPerHost;
+
+    @Value("${http.client.acquire-timeout:30s}")
+    private Duration acquireTimeout;
+
+    @Value("${http.client.max-hold:10m}")
+    private Duration maxHold;
+
+    @Value("${http.client.http2-enabled:true}")
+    private boolean http2Enabled;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${http.client.connect-timeout:10s}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.read-timeout:30s}")
+    private Duration readTimeout;
+
+    @Value("${http.client.write-timeout:30s}")
+    private Duration writeTimeout;
+
+    @Value("${http.client.call-timeout:60s}")
+    private Duration callTimeout;
+
+    @Value("${stability.http.connect-timeout:60s}")
+    private Duration stabilityConnectTimeout;
+
+    @Value("${stability.http.read-timeout:300s}")
+    private Duration stabilityReadTimeout;
+
+    @Value("${stability.http.write-timeout:120s}")
+    private Duration stabilityWriteTimeout;
+
+    @Value("${stability.http.call-timeout:360s}")
+    private Duration stabilityCallTimeout;
+
+    @Bean
+    public ConnectionPool outboundConnectionPool(MeterRegistry registry) {
+        ConnectionPool pool = new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+        Gauge.builder("http.client.pool.connections", pool, ConnectionPool::connectionCount)
+                .register(registry);
+        Gauge.builder("http.client.pool.idle", pool, ConnectionPool::idleConnectionCount)
+                .register(registry);
+        return pool;
+    }
+
+    @Bean
+    public Dispatcher outboundDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    @Bean
+    @Primary
+    public OkHttpClient httpClient(ConnectionPool outboundConnectionPool,
+                                   Dispatcher outboundDispatcher,
+                                   MeterRegistry registry) {
+        // OkHttp 4 waits for HTTP/2 stream data with Object.wait() inside synchronized,
+        // which pins a virtual thread's carrier for the whole provider call
+        List<Protocol> protocols = http2Enabled && !virtualThreads
+                ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : List.of(Protocol.HTTP_1_1);
+
+        return new OkHttpClient.Builder()
+                .connectionPool(outboundConnectionPool)
+                .dispatcher(outboundDispatcher)
+                .protocols(protocols)
+                // The dispatcher only bounds enqueue(); blocking execute() calls are bounded here
+                .addInterceptor(new HostConcurrencyInterceptor(maxRequestsPerHost, acquireTimeout, maxHold))
+                .addInterceptor(new HostMetricsInterceptor(registry))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .callTimeout(callTimeout)
+                .build();
+    }
+
+    @Bean
+    public OkHttpClient stabilityHttpClient(@Qualifier("httpClient") OkHttpClient httpClient) {
+        // Derived clients share the pool, dispatcher and interceptors of the parent
+        return httpClient.newBuilder()
+                .connectTimeout(stabilityConnectTimeout)
+                .readTimeout(stabilityReadTimeout)
+                .writeTimeout(stabilityWriteTimeout)
+                .callTimeout(stabilityCallTimeout)
+                .build();
+    }
+}
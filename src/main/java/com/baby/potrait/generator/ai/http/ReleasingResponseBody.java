@@ -0,0 +1,75 @@
+package com.baby.potrait.generator.ai.http;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Response body wrapper that hands itself to a callback exactly once when the body is closed.
+ */
+class ReleasingResponseBody extends ResponseBody {
+
+    private final ResponseBody delegate;
+    private final Consumer<ReleasingResponseBody> onClose;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final long openedAt = System.nanoTime();
+    private BufferedSource source;
+
+    ReleasingResponseBody(ResponseBody delegate, Consumer<ReleasingResponseBody> onClose) {
+        this.delegate = delegate;
+        this.onClose = onClose;
+    }
+
+    /** {@link System#nanoTime()} when the body was handed out. */
+    long getOpenedAt() {
+        return openedAt;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public BufferedSource source() {
+        if (source == null) {
+            source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            });
+        }
+        return source;
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        if (closed.compareAndSet(false, true)) {
+            onClose.accept(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.baby.potrait.generator.ai.image;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reusable target rasters and encode buffers. A 1024x1024 canvas is a 4 MB
+ * int raster plus a 1-2 MB encode buffer, allocated for every normalization
+ * otherwise. Borrowing never blocks: an empty pool hands out a new canvas,
+ * and a full pool drops the returned one.
+ */
+final class CanvasPool {
+
+    // A 1024x1024 PNG is usually 1-2 MB; start big enough to avoid most regrowth
+    private static final int ENCODE_BUFFER_SIZE = 2 * 1024 * 1024;
+
+    private final int capacity;
+    private final Map<Long, BlockingQueue<Canvas>> pools = new ConcurrentHashMap<>();
+
+    CanvasPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    Canvas borrow(int width, int height) {
+        Canvas canvas = capacity > 0 ? pool(width, height).poll() : null;
+        if (canvas == null) {
+            canvas = new Canvas(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB),
+                    new ByteArrayOutputStream(ENCODE_BUFFER_SIZE));
+        }
+        canvas.out().reset();
+        return canvas;
+    }
+
+    void release(Canvas canvas) {
+        if (capacity > 0) {
+            pool(canvas.image().getWidth(), canvas.image().getHeight()).offer(canvas);
+        }
+    }
+
+    private BlockingQueue<Canvas> pool(int width, int height) {
+        return pools.computeIfAbsent(((long) width << 32) | height, k -> new ArrayBlockingQueue<>(capacity));
+    }
+
+    record Canvas(BufferedImage image, ByteArrayOutputStream out) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.baby.potrait.generator.ai.image;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the EXIF orientation tag of a JPEG and applies it. Phones store
+ * pixels in sensor order and only record the rotation here; ImageIO ignores
+ * it, so without this portrait shots arrive on their side.
+ */
+public final class ExifOrientation {
+
+    public static final int NORMAL = 1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+
+    // EXIF lives in an APP1 segment (at most 64 KB) right after the start of a JPEG
+    private static final int SCAN_LIMIT = 128 * 1024;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * Returns the orientation (1-8) from the JPEG's APP1 segment, or
+     * {@link #NORMAL} when the data is not a JPEG or carries no tag. Only the
+     * marker segments before the image data are read, so the first part of
+     * the file is enough.
+     */
+    public static int read(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return NORMAL;
+        }
+
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) return NORMAL;
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == 0xDA || marker == 0xD9) {
+                // Start of scan or end of image: there is no metadata past this point
+                return NORMAL;
+            }
+            int length = u16(data, pos + 2, true);
+            if (marker == 0xE1 && length >= 16 && pos + 10 <= data.length && isExif(data, pos + 4)) {
+                return fromTiff(data, pos + 10, Math.min(data.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Same, from the start of a stream that supports mark/reset, which is
+     * rewound afterwards so the image can be decoded from it.
+     */
+    public static int read(InputStream in) throws IOException {
+        in.mark(SCAN_LIMIT);
+        try {
+            return read(in.readNBytes(SCAN_LIMIT));
+        } finally {
+            in.reset();
+        }
+    }
+
+    /** Whether the orientation swaps width and height. */
+    public static boolean swapsAxes(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /** Returns the image turned upright, or the same image when it already is. */
+    public static BufferedImage apply(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) return image;
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // mirror horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // rotate 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // mirror vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transpose
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // rotate 90 clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transverse
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // rotate 90 counter-clockwise
+        };
+
+        boolean swap = swapsAxes(orientation);
+        BufferedImage upright = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = upright.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return upright;
+    }
+
+    private static boolean isExif(byte[] data, int pos) {
+        return data[pos] == 'E' && data[pos + 1] == 'x' && data[pos + 2] == 'i' && data[pos + 3] == 'f'
+                && data[pos + 4] == 0 && data[pos + 5] == 0;
+    }
+
+    private static int fromTiff(byte[] data, int start, int end) {
+        if (start + 8 > end) return NORMAL;
+
+        boolean bigEndian;
+        if (data[start] == 'M' && data[start + 1] == 'M') {
+            bigEndian = true;
+        } else if (data[start] == 'I' && data[start + 1] == 'I') {
+            bigEndian = false;
+        } else {
+            return NORMAL;
+        }
+
+        long ifdOffset = u32(data, start + 4, bigEndian);
+        if (ifdOffset < 8 || start + ifdOffset + 2 > end) return NORMAL;
+        int ifd = start + (int) ifdOffset;
+
+        int entries = u16(data, ifd, bigEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) break;
+            if (u16(data, entry, bigEndian) == TAG_ORIENTATION) {
+                int value = u16(data, entry + 8, bigEndian);
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    private static int u16(byte[] data, int pos, boolean bigEndian) {
+        int a = data[pos] & 0xFF;
+        int b = data[pos + 1] & 0xFF;
+        return bigEndian ? (a << 8) | b : (b << 8) | a;
+    }
+
+    private static long u32(byte[] data, int pos, boolean bigEndian) {
+        long hi = u16(data, bigEndian ? pos : pos + 2, bigEndian);
+        long lo = u16(data, bigEndian ? pos + 2 : pos, bigEndian);
+        return (hi << 16) | lo;
+    }
+}
@@ -0,0 +1,172 @@
+package com.baby.potrait.generator.ai.image;
+
+import com.baby.potrait.generator.ai.logging.LogContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.ColorModel;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-flight check for uploaded photos. Only the header is read (format,
+ * dimensions, colour model and EXIF orientation), never the pixel data, so
+ * an unsupported file or a decompression bomb is turned away before it is
+ * uploaded or decoded, and an accepted one comes back with its decode plan.
+ */
+@Component
+public class ImageAdmission {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageAdmission.class);
+
+    public static final String REJECT_FORMAT = "format";
+    public static final String REJECT_CORRUPT = "corrupt";
+    public static final String REJECT_COLOUR_MODEL = "colour_model";
+    public static final String REJECT_TOO_SMALL = "too_small";
+    public static final String REJECT_DIMENSIONS = "dimensions";
+    public static final String REJECT_PIXELS = "pixels";
+
+    private final Set<String> formats;
+    private final int minDimension;
+    private final int maxDimension;
+    private final long maxPixels;
+    private final ImageNormalizer normalizer;
+    private final MeterRegistry registry;
+    private final Timer checkTimer;
+
+    public ImageAdmission(@Value("${image.admission.formats:jpeg,png,gif,bmp}") String formats,
+                          @Value("${image.admission.min-dimension:256}") int minDimension,
+                          @Value("${image.admission.max-dimension:16384}") int maxDimension,
+                          @Value("${image.admission.max-pixels:60000000}") long maxPixels,
+                          ImageNormalizer normalizer,
+                          MeterRegistry registry) {
+        this.formats = Arrays.stream(formats.split(","))
+                .map(f -> f.trim().toLowerCase(Locale.ROOT))
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.minDimension = minDimension;
+        this.maxDimension = maxDimension;
+        this.maxPixels = maxPixels;
+        this.normalizer = normalizer;
+        this.registry = registry;
+        this.checkTimer = Timer.builder("image.admission").register(registry);
+    }
+
+    /**
+     * Reads the header of {@code source} and returns it with the subsampling
+     * the normalizer will use for the given target size.
+     *
+     * @throws ImageRejectedException when the image breaks a limit or cannot be read
+     */
+    public ImageHeader admit(InputStreamSource source, int targetWidth, int targetHeight) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream raw = source.getInputStream()) {
+            BufferedInputStream in = new BufferedInputStream(raw);
+            int orientation = ExifOrientation.read(in);
+            ImageHeader header = readHeader(in, orientation, targetWidth, targetHeight);
+            check(header);
+
+            if (LogContext.debugSampled(log)) {
+                log.debug("Admitted {} {}x{} ({} components{}, orientation {}), decoding at 1/{}",
+                        header.format(), header.width(), header.height(), header.components(),
+                        header.alpha() ? ", alpha" : "", header.orientation(), header.subsampling());
+            }
+            return header;
+        } catch (ImageRejectedException e) {
+            Counter.builder("image.admission.rejected")
+                    .tag("reason", e.getReason())
+                    .register(registry)
+                    .increment();
+            log.info("Rejected upload ({}): {}", e.getReason(), e.getMessage());
+            throw e;
+        } finally {
+            checkTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private ImageHeader readHeader(InputStream in, int orientation, int targetWidth, int targetHeight)
+            throws IOException {
+        // Only the header is read, so a memory cache holds next to nothing and needs no temp file
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new ImageRejectedException(REJECT_FORMAT, "Not a supported image");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                if (!formats.contains(format)) {
+                    throw new ImageRejectedException(REJECT_FORMAT, "Image format " + format + " is not accepted");
+                }
+                reader.setInput(stream, true, true);
+
+                int width;
+                int height;
+                try {
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } catch (IOException | IllegalStateException | IndexOutOfBoundsException e) {
+                    throw new ImageRejectedException(REJECT_CORRUPT, "Image header could not be read");
+                }
+
+                // CMYK and YCCK JPEGs have no type ImageIO can decode to; they would only fail after the upload
+                ColorModel colorModel;
+                try {
+                    Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                    if (types == null || !types.hasNext()) {
+                        throw new ImageRejectedException(REJECT_COLOUR_MODEL, "Unsupported colour model");
+                    }
+                    colorModel = types.next().getColorModel();
+                } catch (IIOException | IllegalStateException e) {
+                    throw new ImageRejectedException(REJECT_COLOUR_MODEL, "Unsupported colour model");
+                }
+
+                return new ImageHeader(format, width, height, colorModel.getNumComponents(),
+                        colorModel.hasAlpha(), orientation,
+                        normalizer.plannedSubsampling(width, height, orientation, targetWidth, targetHeight));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void check(ImageHeader header) {
+        int shorter = Math.min(header.width(), header.height());
+        int longer = Math.max(header.width(), header.height());
+        if (shorter < minDimension) {
+            throw new ImageRejectedException(REJECT_TOO_SMALL,
+                    "Image is " + header.width() + "x" + header.height() + ", at least " + minDimension
+                            + " pixels per side are needed");
+        }
+        if (longer > maxDimension) {
+            throw new ImageRejectedException(REJECT_DIMENSIONS,
+                    "Image is " + header.width() + "x" + header.height() + ", at most " + maxDimension
+                            + " pixels per side are accepted");
+        }
+        // The decoder still reads every source row even when subsampling, so the source size bounds the cost
+        if (header.pixels() > maxPixels) {
+            throw new ImageRejectedException(REJECT_PIXELS,
+                    "Image has " + header.pixels() + " pixels, at most " + maxPixels + " are accepted");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.baby.potrait.generator.ai.image;
+
+/** Encodings used for normalized images sent upstream. */
+public enum ImageFormat {
+
+    PNG("png", "image/png"),
+    JPEG("jpeg", "image/jpeg");
+
+    private final String formatName;
+    private final String mediaType;
+
+    ImageFormat(String formatName, String mediaType) {
+        this.formatName = formatName;
+        this.mediaType = mediaType;
+    }
+
+    /** The ImageIO format name. */
+    public String formatName() {
+        return formatName;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String fileName(String baseName) {
+        return baseName + (this == JPEG ? ".jpg" : ".png");
+    }
+
+    /** Identifies encoded bytes by their signature; anything unrecognised is treated as PNG. */
+    public static ImageFormat detect(byte[] data) {
+        if (data.length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8) {
+            return JPEG;
+        }
+        return PNG;
+    }
+}
@@ -0,0 +1,20 @@
+package com.baby.potrait.generator.ai.image;
+
+/**
+ * What the admission check learned about an upload without decoding pixels.
+ *
+ * @param format      ImageIO format name, lower case
+ * @param width       stored width, before EXIF rotation
+ * @param height      stored height, before EXIF rotation
+ * @param components  colour components per pixel, including alpha
+ * @param alpha       whether the image has an alpha channel
+ * @param orientation EXIF orientation (1-8)
+ * @param subsampling factor the normalizer will decode with
+ */
+public record ImageHeader(String format, int width, int height, int components, boolean alpha,
+                          int orientation, int subsampling) {
+
+    public long pixels() {
+        return (long) width * height;
+    }
+}
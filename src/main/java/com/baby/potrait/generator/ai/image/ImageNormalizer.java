@@ -0,0 +1,184 @@
+package com.baby.potrait.generator.ai.image;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns an arbitrary uploaded photo into the fixed-size image the provider
+ * expects: decodes it (subsampled when it is much larger than needed), turns
+ * it upright per its EXIF orientation, maps it onto the target with the
+ * configured {@link ResizeMode} and {@link ScalingQuality}, and encodes it
+ * with the {@link ImageEncoder}.
+ */
+@Component
+public class ImageNormalizer {
+
+    private final ResizeMode defaultMode;
+    private final ScalingQuality defaultQuality;
+    private final CanvasPool canvasPool;
+    private final ImageEncoder encoder;
+    private final Timer decodeTimer;
+    private final Timer resizeTimer;
+
+    public ImageNormalizer(@Value("${image.normalize.mode:crop}") String defaultMode,
+                           @Value("${image.normalize.quality:quality}") String defaultQuality,
+                           @Value("${image.normalize.buffer-pool-size:8}") int bufferPoolSize,
+                           ImageEncoder encoder,
+                           MeterRegistry registry) {
+        this.encoder = encoder;
+        // Decode covers subsampled reading and EXIF rotation; resize is the draw onto the canvas
+        this.decodeTimer = Timer.builder("image.decode").register(registry);
+        this.resizeTimer = Timer.builder("image.resize").register(registry);
+        this.defaultMode = ResizeMode.valueOf(defaultMode.trim().toUpperCase(Locale.ROOT));
+        this.defaultQuality = ScalingQuality.valueOf(defaultQuality.trim().toUpperCase(Locale.ROOT));
+        this.canvasPool = new CanvasPool(bufferPoolSize);
+    }
+
+    public byte[] normalize(byte[] input, int targetWidth, int targetHeight) throws IOException {
+        return normalize(input, targetWidth, targetHeight, defaultMode, defaultQuality);
+    }
+
+    public byte[] normalize(byte[] input, int targetWidth, int targetHeight,
+                            ResizeMode mode, ScalingQuality quality) throws IOException {
+        return normalize(ExifOrientation.read(input), new ByteArrayInputStream(input),
+                targetWidth, targetHeight, mode, quality);
+    }
+
+    /**
+     * Normalizes straight from a stream, e.g. an upload spooled to disk, so
+     * the encoded photo is never held on the heap as a whole. Only the header
+     * is buffered to find the EXIF orientation; the stream is not closed.
+     */
+    public byte[] normalize(InputStream input, int targetWidth, int targetHeight) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(input);
+        return normalize(ExifOrientation.read(in), in, targetWidth, targetHeight, defaultMode, defaultQuality);
+    }
+
+    private byte[] normalize(int orientation, InputStream input, int targetWidth, int targetHeight,
+                             ResizeMode mode, ScalingQuality quality) throws IOException {
+        boolean swap = ExifOrientation.swapsAxes(orientation);
+
+        // Subsampling happens before rotation, so it is planned against the stored (unrotated) axes
+        long decodeStart = System.nanoTime();
+        BufferedImage source = decode(input,
+                swap ? targetHeight : targetWidth, swap ? targetWidth : targetHeight, mode, quality);
+        source = ExifOrientation.apply(source, orientation);
+        decodeTimer.record(System.nanoTime() - decodeStart, TimeUnit.NANOSECONDS);
+
+        CanvasPool.Canvas canvas = canvasPool.borrow(targetWidth, targetHeight);
+        try {
+            long resizeStart = System.nanoTime();
+            draw(source, canvas.image(), mode, quality);
+            resizeTimer.record(System.nanoTime() - resizeStart, TimeUnit.NANOSECONDS);
+            encoder.encode(canvas.image(), canvas.out());
+            return canvas.out().toByteArray();
+        } finally {
+            canvasPool.release(canvas);
+        }
+    }
+
+    private static BufferedImage decode(InputStream input, int targetWidth, int targetHeight,
+                                        ResizeMode mode, ScalingQuality quality) throws IOException {
+        // ImageIO.createImageInputStream would back this with a temp file while the cache is on
+        try (ImageInputStream in = new MemoryCacheImageInputStream(input)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported or corrupt image data");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = subsampling(reader.getWidth(0), reader.getHeight(0),
+                        targetWidth, targetHeight, mode, quality.decodeHeadroom());
+                if (factor > 1) {
+                    // Only every factor-th pixel and row is decoded, so a 12 MP photo never lands on the heap whole
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                if (image == null) {
+                    throw new IOException("Unsupported or corrupt image data");
+                }
+                return image;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IOException("Unsupported or corrupt image data", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The subsampling factor {@link #normalize(InputStream, int, int)} will
+     * decode an image of this stored size and orientation with.
+     */
+    public int plannedSubsampling(int width, int height, int orientation, int targetWidth, int targetHeight) {
+        boolean swap = ExifOrientation.swapsAxes(orientation);
+        return subsampling(width, height, swap ? targetHeight : targetWidth, swap ? targetWidth : targetHeight,
+                defaultMode, defaultQuality.decodeHeadroom());
+    }
+
+    /**
+     * The largest subsampling factor that still leaves {@code headroom} times
+     * the pixels the final draw needs, so subsampling never forces an upscale.
+     */
+    static int subsampling(int width, int height, int targetWidth, int targetHeight,
+                           ResizeMode mode, int headroom) {
+        double rx = (double) width / (targetWidth * headroom);
+        double ry = (double) height / (targetHeight * headroom);
+        // FIT is bound by the tighter axis; CROP and STRETCH need both axes covered
+        double limit = mode == ResizeMode.FIT ? Math.max(rx, ry) : Math.min(rx, ry);
+        return Math.max(1, (int) Math.floor(limit));
+    }
+
+    private static void draw(BufferedImage source, BufferedImage canvas, ResizeMode mode, ScalingQuality quality) {
+        int sw = source.getWidth();
+        int sh = source.getHeight();
+        int tw = canvas.getWidth();
+        int th = canvas.getHeight();
+
+        Graphics2D g = canvas.createGraphics();
+        try {
+            // Pooled canvases keep the previous image; padding and transparent pixels come out white
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, tw, th);
+
+            switch (mode) {
+                case STRETCH -> quality.draw(source, 0, 0, sw, sh, g, 0, 0, tw, th);
+                case FIT -> {
+                    double scale = Math.min((double) tw / sw, (double) th / sh);
+                    int dw = Math.max(1, (int) Math.round(sw * scale));
+                    int dh = Math.max(1, (int) Math.round(sh * scale));
+                    quality.draw(source, 0, 0, sw, sh, g, (tw - dw) / 2, (th - dh) / 2, dw, dh);
+                }
+                case CROP -> {
+                    double scale = Math.max((double) tw / sw, (double) th / sh);
+                    int cw = Math.min(sw, Math.max(1, (int) Math.round(tw / scale)));
+                    int ch = Math.min(sh, Math.max(1, (int) Math.round(th / scale)));
+                    quality.draw(source, (sw - cw) / 2, (sh - ch) / 2, cw, ch, g, 0, 0, tw, th);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
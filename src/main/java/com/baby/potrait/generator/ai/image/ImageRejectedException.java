@@ -0,0 +1,22 @@
+package com.baby.potrait.generator.ai.image;
+
+/**
+ * Thrown when an upload fails the header-only admission check. It is an
+ * {@link IllegalArgumentException}, so endpoints answer it with 400.
+ */
+public class ImageRejectedException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+
+    public ImageRejectedException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /** Short machine-readable cause, used as the metric tag. */
+    public String getReason() {
+        return reason;
+    }
+}
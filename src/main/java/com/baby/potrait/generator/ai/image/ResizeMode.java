@@ -0,0 +1,14 @@
+package com.baby.potrait.generator.ai.image;
+
+/** How a source image is mapped onto the target canvas. */
+public enum ResizeMode {
+
+    /** Scales to fit inside the target, keeping the aspect ratio, and pads the rest with white. */
+    FIT,
+
+    /** Scales to cover the target, keeping the aspect ratio, and crops the overflow around the centre. */
+    CROP,
+
+    /** Scales each axis independently to the target size. The original behaviour; distorts non-square photos. */
+    STRETCH
+}
@@ -0,0 +1,28 @@
+package com.baby.potrait.generator.ai.job;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "generation.jobs.transport", havingValue = "amqp")
+public class AmqpGenerationJobPublisher implements GenerationJobPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${generation.jobs.queue:portrait.generation}")
+    private String queueName;
+
+    @Value("${generation.jobs.exchange:portrait.jobs}")
+    private String exchangeName;
+
+    public AmqpGenerationJobPublisher(RabbitTemplate rabbitTemplate) {
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    @Override
+    public void publish(GenerationJobMessage message) {
+        rabbitTemplate.convertAndSend(exchangeName, queueName, message);
+    }
+}
@@ -0,0 +1,67 @@
+package com.baby.potrait.generator.ai.job;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "generation.jobs.transport", havingValue = "amqp")
+public class AmqpJobConfig {
+
+    @Value("${generation.jobs.queue:portrait.generation}")
+    private String queueName;
+
+    @Value("${generation.jobs.exchange:portrait.jobs}")
+    private String exchangeName;
+
+    @Value("${generation.jobs.retry-delay:30s}")
+    private Duration retryDelay;
+
+    @Bean
+    public Queue generationQueue() {
+        return QueueBuilder.durable(queueName)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(queueName + ".dlq")
+                .build();
+    }
+
+    @Bean
+    public Queue generationDeadLetterQueue() {
+        return QueueBuilder.durable(queueName + ".dlq").build();
+    }
+
+    /** Holds transiently failed jobs for the retry delay, then dead-letters them back onto the main queue. */
+    @Bean
+    public Queue generationRetryQueue() {
+        return QueueBuilder.durable(queueName + ".retry")
+                .ttl((int) retryDelay.toMillis())
+                .deadLetterExchange(exchangeName)
+                .deadLetterRoutingKey(queueName)
+                .build();
+    }
+
+    @Bean
+    public DirectExchange generationExchange() {
+        return new DirectExchange(exchangeName);
+    }
+
+    @Bean
+    public Binding generationBinding(Queue generationQueue, DirectExchange generationExchange) {
+        return BindingBuilder.bind(generationQueue).to(generationExchange).with(queueName);
+    }
+
+    @Bean
+    public MessageConverter jobMessageConverter() {
+        return new Jackson2JsonMessageConverter();
+    }
+}
@@ -0,0 +1,42 @@
+package com.baby.potrait.generator.ai.job;
+
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transient failures are parked on the retry queue, whose TTL sends them back
+ * to the exchange after the retry delay. Everything else is rejected without
+ * requeue and ends up on the dead letter queue.
+ */
+@Component
+@ConditionalOnProperty(name = "generation.jobs.transport", havingValue = "amqp")
+public class GenerationJobListener {
+
+    private final GenerationJobWorker worker;
+    private final RabbitTemplate rabbitTemplate;
+    private final String retryQueueName;
+
+    public GenerationJobListener(GenerationJobWorker worker, RabbitTemplate rabbitTemplate,
+                                 @Value("${generation.jobs.queue:portrait.generation}") String queueName) {
+        this.worker = worker;
+        this.rabbitTemplate = rabbitTemplate;
+        this.retryQueueName = queueName + ".retry";
+    }
+
+    @RabbitListener(queues = "${generation.jobs.queue:portrait.generation}")
+    public void onMessage(GenerationJobMessage message) {
+        try {
+            worker.process(message);
+        } catch (JobRetryException e) {
+            message.setAttempt(message.getAttempt() + 1);
+            // If this publish fails the listener rejects the original, so the job is dead-lettered rather than lost
+            rabbitTemplate.convertAndSend("", retryQueueName, message);
+        } catch (JobFailedException e) {
+            throw new AmqpRejectAndDontRequeueException(e.getMessage(), e);
+        }
+    }
+}
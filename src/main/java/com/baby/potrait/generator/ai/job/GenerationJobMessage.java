@@ -0,0 +1,69 @@
+package com.baby.potrait.generator.ai.job;
+
+public class GenerationJobMessage {
+
+    private Long portraitId;
+    private Long styleId;
+    private String uploadKey;
+    private int attempt;
+    private String correlationId;
+
+    public GenerationJobMessage() {
+
+    }
+
+    public GenerationJobMessage(Long portraitId, Long styleId, String uploadKey) {
+        this.portraitId = portraitId;
+        this.styleId = styleId;
+        this.uploadKey = uploadKey;
+    }
+
+    public Long getPortraitId() {
+        return portraitId;
+    }
+
+    public void setPortraitId(Long portraitId) {
+        this.portraitId = portraitId;
+    }
+
+    public Long getStyleId() {
+        return styleId;
+    }
+
+    public void setStyleId(Long styleId) {
+        this.styleId = styleId;
+    }
+
+    /** Key of the original in {@link JobUploadStore}; null for jobs queued before uploads were spooled. */
+    public String getUploadKey() {
+        return uploadKey;
+    }
+
+    public void setUploadKey(String uploadKey) {
+        this.uploadKey = uploadKey;
+    }
+
+    /** Zero-based count of earlier runs that failed transiently. */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    /** Correlation id of the request that queued the job, so the worker logs under it too. */
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    @Override
+    public String toString() {
+        return "GenerationJobMessage [portraitId=" + portraitId + ", styleId=" + styleId
+                + ", uploadKey=" + uploadKey + ", attempt=" + attempt + ", correlationId=" + correlationId + "]";
+    }
+}
@@ -0,0 +1,11 @@
+package com.baby.potrait.generator.ai.job;
+
+/**
+ * Hands a generation job over to whatever runs the pipeline. The transport is
+ * chosen with {@code generation.jobs.transport}: {@code amqp} publishes to
+ * RabbitMQ, {@code local} runs the job on an in-process executor.
+ */
+public interface GenerationJobPublisher {
+
+    void publish(GenerationJobMessage message);
+}
@@ -0,0 +1,79 @@
+package com.baby.potrait.generator.ai.job;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.logging.LogContext;
+import com.baby.potrait.generator.ai.service.ImageService;
+import com.baby.potrait.generator.ai.service.PortraitService;
+import com.baby.potrait.generator.ai.service.StyleService;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.Optional;
+
+@Service
+public class GenerationJobService {
+
+    private final StyleService styleService;
+    private final PortraitService portraitService;
+    private final GenerationJobPublisher publisher;
+    private final ImageService imageService;
+    private final JobUploadStore uploads;
+
+    public GenerationJobService(StyleService styleService,
+                                PortraitService portraitService,
+                                GenerationJobPublisher publisher,
+                                ImageService imageService,
+                                JobUploadStore uploads) {
+        this.styleService = styleService;
+        this.portraitService = portraitService;
+        this.publisher = publisher;
+        this.imageService = imageService;
+        this.uploads = uploads;
+    }
+
+    /**
+     * Queues a generation and returns at once. Only the header check runs on
+     * the request thread; normalization, the reuse lookup and the Cloudinary
+     * upload happen on the worker.
+     */
+    public GenerationJobStatus submit(MultipartFile file, Long styleId) throws IOException {
+        Style style = styleService.getStyleById(styleId)
+                .orElseThrow(() -> new RuntimeException("Style not found"));
+        imageService.admit(file);
+
+        String uploadKey = uploads.store(file);
+        Portrait portrait = new Portrait();
+        portrait.setUploadedFileName(file.getOriginalFilename());
+        portrait.setStyle(style);
+        portrait.setStatus(PortraitStatus.PENDING);
+        try {
+            portrait = portraitService.save(portrait);
+        } catch (RuntimeException e) {
+            uploads.remove(uploadKey);
+            throw e;
+        }
+
+        // Taken before publishing: from then on the worker may already be updating the portrait
+        GenerationJobStatus submitted = GenerationJobStatus.of(portrait);
+        try {
+            GenerationJobMessage message = new GenerationJobMessage(portrait.getId(), styleId, uploadKey);
+            message.setCorrelationId(MDC.get(LogContext.CORRELATION_ID));
+            publisher.publish(message);
+        } catch (RuntimeException e) {
+            uploads.remove(uploadKey);
+            portrait.setStatus(PortraitStatus.FAILED);
+            portrait.setErrorMessage("Could not queue job: " + e.getMessage());
+            portraitService.save(portrait);
+            throw e;
+        }
+        return submitted;
+    }
+
+    public Optional<GenerationJobStatus> getStatus(Long jobId) {
+        return portraitService.getPortraitById(jobId).map(GenerationJobStatus::of);
+    }
+}
@@ -0,0 +1,42 @@
+package com.baby.potrait.generator.ai.job;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+
+public class GenerationJobStatus {
+
+    private final Long jobId;
+    private final PortraitStatus status;
+    private final String generatedImageUrl;
+    private final String errorMessage;
+
+    public GenerationJobStatus(Long jobId, PortraitStatus status, String generatedImageUrl, String errorMessage) {
+        this.jobId = jobId;
+        this.status = status;
+        this.generatedImageUrl = generatedImageUrl;
+        this.errorMessage = errorMessage;
+    }
+
+    public static GenerationJobStatus of(Portrait portrait) {
+        // Rows written before job mode existed have no status but are always finished
+        PortraitStatus status = portrait.getStatus() != null ? portrait.getStatus() : PortraitStatus.COMPLETED;
+        return new GenerationJobStatus(portrait.getId(), status,
+                portrait.getGeneratedImageUrl(), portrait.getErrorMessage());
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public PortraitStatus getStatus() {
+        return status;
+    }
+
+    public String getGeneratedImageUrl() {
+        return generatedImageUrl;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
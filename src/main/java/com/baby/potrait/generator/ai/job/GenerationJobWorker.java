@@ -0,0 +1,123 @@
+package com.baby.potrait.generator.ai.job;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+import com.baby.potrait.generator.ai.logging.DebugLogSampler;
+import com.baby.potrait.generator.ai.logging.LogContext;
+import com.baby.potrait.generator.ai.resilience.CloudinaryApiException;
+import com.baby.potrait.generator.ai.resilience.StabilityApiException;
+import com.baby.potrait.generator.ai.service.GenerateService;
+import com.baby.potrait.generator.ai.service.GenerationResult;
+import com.baby.potrait.generator.ai.service.PortraitService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class GenerationJobWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationJobWorker.class);
+
+    private final GenerateService generateService;
+    private final PortraitService portraitService;
+    private final JobUploadStore uploads;
+    private final DebugLogSampler debugLogSampler;
+    private final int maxAttempts;
+
+    public GenerationJobWorker(GenerateService generateService, PortraitService portraitService,
+                               JobUploadStore uploads, DebugLogSampler debugLogSampler,
+                               @Value("${generation.jobs.max-attempts:5}") int maxAttempts) {
+        this.generateService = generateService;
+        this.portraitService = portraitService;
+        this.uploads = uploads;
+        this.debugLogSampler = debugLogSampler;
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * Runs one job to completion.
+     *
+     * @throws JobRetryException when it failed transiently and has attempts left; the portrait is PENDING again
+     * @throws JobFailedException when it failed for good; the portrait is marked FAILED
+     */
+    public void process(GenerationJobMessage message) {
+        String correlationId = message.getCorrelationId() != null
+                ? message.getCorrelationId()
+                : "job-" + message.getPortraitId();
+        LogContext.Scope scope = LogContext.open(correlationId, debugLogSampler.sample());
+        try {
+            run(message);
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void run(GenerationJobMessage message) {
+        Portrait portrait = portraitService.getPortraitById(message.getPortraitId()).orElse(null);
+        if (portrait == null) {
+            log.warn("Dropping job for missing portrait: {}", message);
+            removeUpload(message);
+            return;
+        }
+        // Redelivered messages must not pay for a second generation
+        if (portrait.getStatus() == PortraitStatus.COMPLETED) {
+            removeUpload(message);
+            return;
+        }
+
+        portrait.setStatus(PortraitStatus.PROCESSING);
+        portraitService.save(portrait);
+
+        try {
+            GenerationResult result = message.getUploadKey() != null
+                    ? generateService.generateFromFile(uploads.path(message.getUploadKey()), message.getStyleId())
+                    : generateService.generateFromUrl(portrait.getUploadedFileUrl(), message.getStyleId());
+            result.applyTo(portrait);
+            portrait.setStatus(PortraitStatus.COMPLETED);
+            portrait.setErrorMessage(null);
+        } catch (Exception e) {
+            // A saturated provider is exactly when the queue should hold on to the job
+            if (isTransient(e) && message.getAttempt() + 1 < maxAttempts) {
+                log.warn("Generation job for portrait {} failed on attempt {} of {}, retrying later: {}",
+                        portrait.getId(), message.getAttempt() + 1, maxAttempts, e.getMessage());
+                portrait.setStatus(PortraitStatus.PENDING);
+                portrait.setErrorMessage(truncate("Retrying after: " + e.getMessage()));
+                portraitService.save(portrait);
+                throw new JobRetryException(e);
+            }
+            log.error("Generation job for portrait {} failed", portrait.getId(), e);
+            portrait.setStatus(PortraitStatus.FAILED);
+            portrait.setErrorMessage(truncate(e.getMessage()));
+            portraitService.save(portrait);
+            removeUpload(message);
+            throw new JobFailedException(e);
+        }
+        portraitService.save(portrait);
+        removeUpload(message);
+    }
+
+    /** Busy providers, open breakers, 5xx answers and network errors; not bad input or 4xx answers. */
+    static boolean isTransient(Throwable e) {
+        if (e instanceof StabilityApiException api) {
+            return api.isTransient();
+        }
+        if (e instanceof CloudinaryApiException api) {
+            return api.isTransient();
+        }
+        return e instanceof IOException;
+    }
+
+    private void removeUpload(GenerationJobMessage message) {
+        if (message.getUploadKey() != null) {
+            uploads.remove(message.getUploadKey());
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
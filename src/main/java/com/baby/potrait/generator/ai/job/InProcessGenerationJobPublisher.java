@@ -0,0 +1,94 @@
+package com.baby.potrait.generator.ai.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broker-less stand-in for {@link AmqpGenerationJobPublisher}: jobs go onto a
+ * bounded in-process queue and are drained by a small worker pool. Used for
+ * single-node setups and tests that should not need RabbitMQ. Transient
+ * failures are put back on the queue after the retry delay; jobs still waiting
+ * for a retry are lost on shutdown, like anything else in this queue.
+ */
+@Component
+@ConditionalOnProperty(name = "generation.jobs.transport", havingValue = "local", matchIfMissing = true)
+public class InProcessGenerationJobPublisher implements GenerationJobPublisher, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(InProcessGenerationJobPublisher.class);
+
+    private final GenerationJobWorker worker;
+    private final ThreadPoolTaskExecutor executor;
+    private final ScheduledExecutorService retries;
+    private final long retryDelayMillis;
+
+    public InProcessGenerationJobPublisher(GenerationJobWorker worker,
+                                           @Value("${generation.jobs.local.workers:4}") int workers,
+                                           @Value("${generation.jobs.local.queue-capacity:100}") int queueCapacity,
+                                           @Value("${generation.jobs.retry-delay:30s}") Duration retryDelay) {
+        this.worker = worker;
+        this.retryDelayMillis = retryDelay.toMillis();
+
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(workers);
+        this.executor.setMaxPoolSize(workers);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("generation-job-");
+        this.executor.initialize();
+
+        this.retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-job-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void publish(GenerationJobMessage message) {
+        executor.execute(() -> run(message));
+    }
+
+    private void run(GenerationJobMessage message) {
+        try {
+            worker.process(message);
+        } catch (JobRetryException e) {
+            message.setAttempt(message.getAttempt() + 1);
+            scheduleRetry(message);
+        } catch (JobFailedException e) {
+            // Already marked FAILED and logged by the worker; there is no dead letter queue to hand it to
+        }
+    }
+
+    private void scheduleRetry(GenerationJobMessage message) {
+        try {
+            retries.schedule(() -> {
+                try {
+                    publish(message);
+                } catch (TaskRejectedException e) {
+                    // Queue is full right now; wait another round rather than drop the job
+                    log.warn("Job queue full, delaying retry of portrait {}", message.getPortraitId());
+                    scheduleRetry(message);
+                }
+            }, retryDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.warn("Shutting down, dropping retry of portrait {}", message.getPortraitId());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        retries.shutdownNow();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,15 @@
+package com.baby.potrait.generator.ai.job;
+
+/**
+ * Thrown by {@link GenerationJobWorker} when a job failed for good. The
+ * portrait is already marked FAILED; the amqp transport dead-letters the
+ * message so it can be inspected or replayed.
+ */
+public class JobFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JobFailedException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
+}
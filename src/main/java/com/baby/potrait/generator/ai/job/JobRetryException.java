@@ -0,0 +1,15 @@
+package com.baby.potrait.generator.ai.job;
+
+/**
+ * Thrown by {@link GenerationJobWorker} when a job failed for a reason that
+ * may pass (a busy provider, an open breaker, a network error) and has
+ * attempts left. The transport runs it again after the retry delay.
+ */
+public class JobRetryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JobRetryException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
+}
@@ -0,0 +1,65 @@
+package com.baby.potrait.generator.ai.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
+
+/**
+ * Holds a queued job's original photo between submit and the worker, so the
+ * request thread only has to write the upload to disk. With the amqp
+ * transport and several nodes, {@code generation.jobs.upload-dir} must be a
+ * directory every worker can read.
+ */
+@Component
+public class JobUploadStore {
+
+    private static final Logger log = LoggerFactory.getLogger(JobUploadStore.class);
+
+    private static final String SUFFIX = ".upload";
+
+    private final Path directory;
+
+    public JobUploadStore(@Value("${generation.jobs.upload-dir:${java.io.tmpdir}/generation-job-uploads}") String directory)
+            throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+    }
+
+    /** Stores the upload and returns the key the worker finds it under. */
+    public String store(MultipartFile file) throws IOException {
+        String key = UUID.randomUUID().toString();
+        // Moves the container's temp file when it has one, otherwise copies the bytes
+        file.transferTo(fileFor(key));
+        return key;
+    }
+
+    public Path path(String key) {
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) {
+            // Not an I/O hiccup worth retrying: the upload is gone for good
+            throw new IllegalStateException("Upload " + key + " not found in " + directory);
+        }
+        return file;
+    }
+
+    public void remove(String key) {
+        try {
+            Files.deleteIfExists(fileFor(key));
+        } catch (IOException e) {
+            log.warn("Failed to remove job upload {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        // Keys come back in queue messages; only accept the UUIDs handed out above
+        return directory.resolve(UUID.fromString(key) + SUFFIX);
+    }
+}
@@ -0,0 +1,50 @@
+package com.baby.potrait.generator.ai.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Gives every request a correlation id, taken from {@code X-Correlation-Id}
+ * when the caller sent a sane one, and echoes it back on the response.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Correlation-Id";
+
+    // Caller-supplied ids end up in every log line, so only short plain tokens are accepted
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final DebugLogSampler sampler;
+
+    public CorrelationIdFilter(DebugLogSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String correlationId = request.getHeader(HEADER);
+        if (correlationId == null || !VALID_ID.matcher(correlationId).matches()) {
+            correlationId = LogContext.newCorrelationId();
+        }
+        response.setHeader(HEADER, correlationId);
+
+        LogContext.Scope scope = LogContext.open(correlationId, sampler.sample());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            scope.close();
+        }
+    }
+}
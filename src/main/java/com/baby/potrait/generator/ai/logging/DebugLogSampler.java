@@ -0,0 +1,25 @@
+package com.baby.potrait.generator.ai.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which requests get verbose debug logging. The choice is made once
+ * per request, so a sampled request logs every stage rather than a random
+ * subset of lines.
+ */
+@Component
+public class DebugLogSampler {
+
+    private final double rate;
+
+    public DebugLogSampler(@Value("${logging.sampling.debug-rate:0.01}") double rate) {
+        this.rate = Math.max(0, Math.min(1, rate));
+    }
+
+    public boolean sample() {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+}
@@ -0,0 +1,79 @@
+package com.baby.potrait.generator.ai.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-request logging context kept in the MDC: a correlation id that every
+ * log line of the request carries, and whether the request was picked for
+ * verbose debug logging. Work handed to another thread takes the context
+ * along through {@link #wrap(Runnable)}.
+ */
+public final class LogContext {
+
+    public static final String CORRELATION_ID = "correlationId";
+    static final String DEBUG_SAMPLED = "debugSampled";
+
+    private LogContext() {
+    }
+
+    public static String newCorrelationId() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+
+    /**
+     * Puts the context in place for the current thread until the returned
+     * scope is closed, which callers do in a finally block.
+     */
+    public static Scope open(String correlationId, boolean debugSampled) {
+        MDC.put(CORRELATION_ID, correlationId);
+        if (debugSampled) {
+            MDC.put(DEBUG_SAMPLED, "true");
+        }
+        return () -> {
+            MDC.remove(CORRELATION_ID);
+            MDC.remove(DEBUG_SAMPLED);
+        };
+    }
+
+    /**
+     * True when {@code log} has debug enabled and the current request was
+     * sampled, so per-request detail is only built for a fraction of requests.
+     */
+    public static boolean debugSampled(Logger log) {
+        return log.isDebugEnabled() && MDC.get(DEBUG_SAMPLED) != null;
+    }
+
+    /** Runs {@code task} with the caller's MDC, restoring the worker thread's own afterwards. */
+    public static Runnable wrap(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            MDC.setContextMap(context);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    MDC.clear();
+                } else {
+                    MDC.setContextMap(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Not {@link AutoCloseable}: a try-with-resources whose variable is never
+     * read trips -Xlint:try.
+     */
+    @FunctionalInterface
+    public interface Scope {
+        void close();
+    }
+}
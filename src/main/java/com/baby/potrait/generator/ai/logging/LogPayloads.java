@@ -0,0 +1,47 @@
+package com.baby.potrait.generator.ai.logging;
+
+/**
+ * Keeps request and response payloads out of the logs: long text is cut to a
+ * prefix and URLs lose their query string and credentials.
+ */
+public final class LogPayloads {
+
+    public static final int DEFAULT_LIMIT = 256;
+
+    private LogPayloads() {
+    }
+
+    public static String truncate(String text) {
+        return truncate(text, DEFAULT_LIMIT);
+    }
+
+    public static String truncate(String text, int limit) {
+        if (text == null || text.length() <= limit) {
+            return text;
+        }
+        return text.substring(0, limit) + "...(" + (text.length() - limit) + " more chars)";
+    }
+
+    /** Drops user info, query and fragment, which is where signatures and tokens live. */
+    public static String redactUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) end = query;
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) end = fragment;
+        String base = url.substring(0, end);
+
+        int host = base.indexOf("://") + 3;
+        if (host >= 3) {
+            int at = base.indexOf('@', host);
+            int path = base.indexOf('/', host);
+            if (at >= 0 && (path < 0 || at < path)) {
+                base = base.substring(0, host) + "***@" + base.substring(at + 1);
+            }
+        }
+        return end < url.length() ? base + "?***" : base;
+    }
+}
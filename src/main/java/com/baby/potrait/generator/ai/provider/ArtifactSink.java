@@ -0,0 +1,20 @@
+package com.baby.potrait.generator.ai.provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Receives generated images from a provider, in the order the provider returns them. */
+public interface ArtifactSink {
+
+    /** Starts an artifact; the provider writes its encoded bytes to the stream and closes it. */
+    OutputStream begin() throws IOException;
+
+    /** Keeps the artifact just written, or drops it when the provider filtered it. */
+    void end(boolean keep) throws IOException;
+
+    /**
+     * Discards the artifact in progress after the provider failed between
+     * {@link #begin()} and {@link #end(boolean)}; does nothing when none is.
+     */
+    void abort();
+}
@@ -0,0 +1,36 @@
+package com.baby.potrait.generator.ai.provider;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * A backend that turns an original photo and a style into generated images.
+ * Implementations are Spring beans; {@link GenerationProviderRouter} decides
+ * which one serves a request.
+ */
+public interface GenerationProvider {
+
+    /** Short stable name, used in configuration, metrics and logs. */
+    String name();
+
+    ProviderCapabilities capabilities();
+
+    /**
+     * Identifies the model and fixed parameters behind this provider's output.
+     * Stored with every result and part of the reuse key, so change it
+     * whenever the output for the same input would change.
+     */
+    String generationParams();
+
+    /** Whether a call made now would be admitted, i.e. the provider is neither failing nor saturated. */
+    boolean isAvailable();
+
+    /**
+     * Generates {@code request.samples()} images into a sink and returns how
+     * many were kept. A provider that retries takes a fresh sink from
+     * {@code sinks} for every attempt.
+     *
+     * @throws com.baby.potrait.generator.ai.ratelimit.ProviderBusyException when the provider cannot take the call now
+     */
+    int generate(GenerationRequest request, Supplier<ArtifactSink> sinks) throws IOException;
+}
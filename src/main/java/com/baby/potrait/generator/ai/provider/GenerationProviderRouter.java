@@ -0,0 +1,138 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Picks the provider for each generation. Remote providers that are
+ * available are preferred, lowest observed latency first, with the primary
+ * winning until there is a measurement. With
+ * {@code generation.provider.degraded-fallback} enabled, the fallback
+ * provider takes over when no remote one is available and when the chosen
+ * one turns a call away as busy.
+ */
+@Component
+public class GenerationProviderRouter {
+
+    // Weight of the newest call in the latency average
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final Map<String, GenerationProvider> providers = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> latencyNanos = new LinkedHashMap<>();
+    private final GenerationProvider primary;
+    private final GenerationProvider fallback;
+    private final boolean degradedFallback;
+    private final MeterRegistry registry;
+
+    public GenerationProviderRouter(List<GenerationProvider> providers,
+                                    @Value("${generation.provider.primary:stability}") String primary,
+                                    @Value("${generation.provider.fallback:local}") String fallback,
+                                    @Value("${generation.provider.degraded-fallback:false}") boolean degradedFallback,
+                                    MeterRegistry registry) {
+        for (GenerationProvider provider : providers) {
+            this.providers.put(provider.name(), provider);
+            AtomicLong latency = new AtomicLong();
+            this.latencyNanos.put(provider.name(), latency);
+            Gauge.builder("generation.provider.latency", latency, l -> l.get() / 1e9)
+                    .tag("provider", provider.name())
+                    .baseUnit("seconds")
+                    .description("Moving average of successful call latency")
+                    .register(registry);
+        }
+        this.primary = require(primary);
+        this.fallback = require(fallback);
+        this.degradedFallback = degradedFallback;
+        this.registry = registry;
+    }
+
+    private GenerationProvider require(String name) {
+        GenerationProvider provider = providers.get(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("Unknown generation provider '" + name + "', known: " + providers.keySet());
+        }
+        return provider;
+    }
+
+    /** The provider whose results are looked up for reuse before generating. */
+    public GenerationProvider primary() {
+        return primary;
+    }
+
+    public GenerationProvider select(int samples) {
+        List<GenerationProvider> candidates = new ArrayList<>();
+        candidates.add(primary);
+        for (GenerationProvider provider : providers.values()) {
+            if (provider != primary && provider != fallback && provider.capabilities().remote()) {
+                candidates.add(provider);
+            }
+        }
+
+        GenerationProvider best = null;
+        long bestLatency = Long.MAX_VALUE;
+        for (GenerationProvider provider : candidates) {
+            if (!provider.capabilities().supports(samples) || !provider.isAvailable()) continue;
+            long latency = latencyNanos.get(provider.name()).get();
+            // Unmeasured providers sort first so they get a measurement; the primary is listed first
+            if (best == null || latency < bestLatency) {
+                best = provider;
+                bestLatency = latency;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        if (degradedFallback && fallback.capabilities().supports(samples) && fallback.isAvailable()) {
+            return fallback;
+        }
+        // Nothing is available: let the primary fail (or queue) the way it normally does
+        return primary;
+    }
+
+    /** The provider to retry on after {@code failed} turned a call away as busy, if degraded mode allows one. */
+    public Optional<GenerationProvider> fallbackFor(GenerationProvider failed, int samples) {
+        if (!degradedFallback || failed == fallback || !fallback.capabilities().supports(samples)) {
+            return Optional.empty();
+        }
+        return Optional.of(fallback);
+    }
+
+    /** Runs the call on {@code provider}, feeding its latency and outcome into routing and metrics. */
+    public int generate(GenerationProvider provider, GenerationRequest request, Supplier<ArtifactSink> sinks)
+            throws IOException {
+        long start = System.nanoTime();
+        String outcome = "failure";
+        try {
+            int count = provider.generate(request, sinks);
+            outcome = "success";
+            recordLatency(provider, System.nanoTime() - start);
+            return count;
+        } catch (ProviderBusyException e) {
+            outcome = "busy";
+            throw e;
+        } finally {
+            Counter.builder("generation.provider.calls")
+                    .tag("provider", provider.name())
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private void recordLatency(GenerationProvider provider, long nanos) {
+        latencyNanos.get(provider.name()).accumulateAndGet(nanos,
+                (average, sample) -> average == 0 ? sample : (long) (average + LATENCY_ALPHA * (sample - average)));
+    }
+}
@@ -0,0 +1,8 @@
+package com.baby.potrait.generator.ai.provider;
+
+/**
+ * One image-to-image generation: the normalized original, the normalized
+ * style reference, the style's prompt and how many variants to return.
+ */
+public record GenerationRequest(byte[] original, byte[] styleReference, String prompt, int samples) {
+}
@@ -0,0 +1,187 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * CPU-only stand-in for a model: moves the photo's colour statistics towards
+ * the style reference's (per-channel mean and spread) and blends a little of
+ * the reference over it. The output depends only on the input, so it suits
+ * offline benchmarking, and it can serve a degraded result when the remote
+ * provider is saturated or down. The prompt is ignored.
+ */
+@Component
+public class LocalGenerationProvider implements GenerationProvider {
+
+    public static final String NAME = "local";
+
+    // Bump the version when the filter changes, so earlier outputs are not reused
+    private static final String GENERATION_PARAMS = "local-colour-transfer-v1";
+
+    private static final double BASE_STRENGTH = 0.55;
+    private static final double STRENGTH_STEP = 0.15;
+    private static final double REFERENCE_BLEND = 0.15;
+
+    private final ProviderCapabilities capabilities;
+    private final Semaphore slots;
+
+    public LocalGenerationProvider(@Value("${generation.provider.local.max-concurrency:0}") int maxConcurrency) {
+        int concurrency = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+        this.capabilities = new ProviderCapabilities(4, concurrency, 0, false);
+        this.slots = new Semaphore(concurrency);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public ProviderCapabilities capabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public String generationParams() {
+        return GENERATION_PARAMS;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return slots.availablePermits() > 0;
+    }
+
+    @Override
+    public int generate(GenerationRequest request, Supplier<ArtifactSink> sinks) throws IOException {
+        // CPU-bound: beyond one call per core it only adds latency, so callers are turned away instead
+        if (!slots.tryAcquire()) {
+            throw new ProviderBusyException("Local provider is at capacity", 1);
+        }
+        try {
+            BufferedImage original = decode(request.original(), "Original image");
+            BufferedImage reference = fitTo(decode(request.styleReference(), "Style reference image"),
+                    original.getWidth(), original.getHeight());
+
+            int width = original.getWidth();
+            int height = original.getHeight();
+            int[] source = original.getRGB(0, 0, width, height, null, 0, width);
+            int[] style = reference.getRGB(0, 0, width, height, null, 0, width);
+            ChannelStats from = ChannelStats.of(source);
+            ChannelStats to = ChannelStats.of(style);
+
+            ArtifactSink sink = sinks.get();
+            int[] out = new int[source.length];
+            BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            for (int sample = 0; sample < request.samples(); sample++) {
+                // Variants differ only in how far they move towards the reference
+                double strength = Math.min(1.0, BASE_STRENGTH + STRENGTH_STEP * sample);
+                transfer(source, style, out, from, to, strength);
+                result.setRGB(0, 0, width, height, out, 0, width);
+
+                // Memory-cached streams, since ImageIO's default cache writes a temp file per call
+                try (OutputStream stream = sink.begin();
+                     ImageOutputStream image = new MemoryCacheImageOutputStream(stream)) {
+                    ImageIO.write(result, "png", image);
+                } catch (IOException | RuntimeException e) {
+                    sink.abort();
+                    throw e;
+                }
+                sink.end(true);
+            }
+            return request.samples();
+        } finally {
+            slots.release();
+        }
+    }
+
+    private static void transfer(int[] source, int[] style, int[] out, ChannelStats from, ChannelStats to,
+                                 double strength) {
+        double[] scale = new double[3];
+        for (int c = 0; c < 3; c++) {
+            scale[c] = from.deviation[c] > 1e-6 ? to.deviation[c] / from.deviation[c] : 1.0;
+        }
+        for (int i = 0; i < source.length; i++) {
+            int rgb = source[i];
+            int ref = style[i];
+            int pixel = 0;
+            for (int c = 0; c < 3; c++) {
+                int shift = 16 - 8 * c;
+                double value = (rgb >> shift) & 0xFF;
+                double transferred = (value - from.mean[c]) * scale[c] + to.mean[c];
+                double moved = value + strength * (transferred - value);
+                double blended = moved * (1 - REFERENCE_BLEND) + ((ref >> shift) & 0xFF) * REFERENCE_BLEND;
+                pixel |= clamp(blended) << shift;
+            }
+            out[i] = pixel;
+        }
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static BufferedImage decode(byte[] bytes, String what) throws IOException {
+        if (bytes.length == 0) {
+            throw new IOException(what + " is empty");
+        }
+        BufferedImage image = ImageIO.read(new MemoryCacheImageInputStream(new ByteArrayInputStream(bytes)));
+        if (image == null) {
+            throw new IOException(what + " could not be decoded");
+        }
+        return image;
+    }
+
+    private static BufferedImage fitTo(BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /** Per-channel (R, G, B) mean and standard deviation. */
+    private static final class ChannelStats {
+
+        final double[] mean = new double[3];
+        final double[] deviation = new double[3];
+
+        static ChannelStats of(int[] pixels) {
+            ChannelStats stats = new ChannelStats();
+            double[] sum = new double[3];
+            double[] squares = new double[3];
+            for (int rgb : pixels) {
+                for (int c = 0; c < 3; c++) {
+                    int value = (rgb >> (16 - 8 * c)) & 0xFF;
+                    sum[c] += value;
+                    squares[c] += (double) value * value;
+                }
+            }
+            for (int c = 0; c < 3; c++) {
+                stats.mean[c] = sum[c] / pixels.length;
+                stats.deviation[c] = Math.sqrt(Math.max(0, squares[c] / pixels.length - stats.mean[c] * stats.mean[c]));
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.baby.potrait.generator.ai.provider;
+
+/**
+ * What a provider can take on.
+ *
+ * @param maxSamples     most variants one call may ask for
+ * @param maxConcurrency calls the provider is expected to handle at once
+ * @param costPerImage   provider credits charged per generated image
+ * @param remote         whether this is a remote model; local providers only
+ *                       approximate a style and serve as a degraded fallback
+ */
+public record ProviderCapabilities(int maxSamples, int maxConcurrency, double costPerImage, boolean remote) {
+
+    public boolean supports(int samples) {
+        return samples >= 1 && samples <= maxSamples;
+    }
+}
@@ -0,0 +1,253 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.baby.potrait.generator.ai.image.ImageFormat;
+import com.baby.potrait.generator.ai.logging.LogContext;
+import com.baby.potrait.generator.ai.logging.LogPayloads;
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import com.baby.potrait.generator.ai.ratelimit.ProviderCallLimiter;
+import com.baby.potrait.generator.ai.resilience.CircuitBreaker;
+import com.baby.potrait.generator.ai.resilience.RetryPolicy;
+import com.baby.potrait.generator.ai.resilience.StabilityApiException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stability AI SDXL image-to-image. Calls go through the retry policy, the
+ * circuit breaker and the client-side rate/concurrency limiter, and the
+ * artifacts are decoded straight from the response into the sink.
+ */
+@Component
+public class StabilityGenerationProvider implements GenerationProvider {
+
+    public static final String NAME = "stability";
+
+    private static final Logger log = LoggerFactory.getLogger(StabilityGenerationProvider.class);
+
+    // Identifies the fixed request parameters below; bump it when they change so old results are not reused
+    private static final String GENERATION_PARAMS = "sdxl-1024-i2i;strength=0.35;cfg=7;steps=30";
+
+    // Stability error bodies are short JSON messages; anything longer is not worth keeping
+    private static final long ERROR_BODY_LIMIT = 4096;
+
+    private final OkHttpClient client;
+    private final ProviderCallLimiter callLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final ProviderCapabilities capabilities;
+    private final DistributionSummary responseAllocation;
+    private final DistributionSummary requestPayload;
+    private final Timer responseDecode;
+
+    @Value("${stability.api.key}")
+    private String stabilityApiKey;
+
+    @Value("${stability.api.endpoint:https://api.stability.ai/v1/generation/stable-diffusion-xl-1024-v1-0/image-to-image}")
+    private String stabilityEndpoint;
+
+    public StabilityGenerationProvider(@Qualifier("stabilityHttpClient") OkHttpClient client,
+                                       ProviderCallLimiter callLimiter,
+                                       @Qualifier("stabilityCircuitBreaker") CircuitBreaker circuitBreaker,
+                                       @Qualifier("stabilityRetryPolicy") RetryPolicy retryPolicy,
+                                       @Value("${stability.limiter.max-concurrency:32}") int maxConcurrency,
+                                       @Value("${stability.cost-per-image:0.2}") double costPerImage,
+                                       MeterRegistry registry) {
+        this.client = client;
+        this.callLimiter = callLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        // The v1 image-to-image endpoint accepts 1 to 10 samples per call
+        this.capabilities = new ProviderCapabilities(10, maxConcurrency, costPerImage, true);
+        // Heap allocated on the calling thread while executing the request and decoding the artifacts
+        this.responseAllocation = DistributionSummary.builder("stability.response.allocated")
+                .baseUnit("bytes")
+                .register(registry);
+        this.requestPayload = DistributionSummary.builder("stability.request.bytes")
+                .baseUnit("bytes")
+                .register(registry);
+        // Decoding is streamed, so this includes reading the body off the socket
+        this.responseDecode = Timer.builder("stability.response.decode")
+                .register(registry);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public ProviderCapabilities capabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public String generationParams() {
+        return GENERATION_PARAMS;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted() && !callLimiter.isSaturated();
+    }
+
+    @Override
+    public int generate(GenerationRequest request, Supplier<ArtifactSink> sinks) throws IOException {
+        try {
+            // Each attempt decodes into a fresh sink, which rewrites from sample 0. The limiter
+            // goes first: a local rejection must not use up the breaker's half-open trial
+            return retryPolicy.call("Stability AI call", () -> {
+                try (ProviderCallLimiter.Permit permit = acquirePermit()) {
+                    return circuitBreaker.call(() -> call(request, sinks.get(), permit));
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Stability AI call failed: " + e.getMessage(), e);
+        }
+    }
+
+    /** The image-to-image multipart form; package-private so the benchmarks can build it in isolation. */
+    static MultipartBody requestBody(byte[] original, String prompt, int samples) {
+        // Build multipart request for image-to-image generation
+        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+
+        // Add the original image as init_image, in whatever format the normalizer encoded it
+        ImageFormat format = ImageFormat.detect(original);
+        builder.addFormDataPart("init_image", format.fileName("init_image"),
+            RequestBody.create(original, MediaType.parse(format.mediaType())));
+
+        // Add the prompt
+        builder.addFormDataPart("text_prompts[0][text]", prompt);
+        builder.addFormDataPart("text_prompts[0][weight]", "1");
+
+        // Add negative prompt
+        builder.addFormDataPart("text_prompts[1][text]", "blurry, low quality, distorted, ugly, bad anatomy");
+        builder.addFormDataPart("text_prompts[1][weight]", "-1");
+
+        // Generation parameters
+        builder.addFormDataPart("image_strength", "0.35");
+        builder.addFormDataPart("cfg_scale", "7");
+        builder.addFormDataPart("steps", "30");
+        builder.addFormDataPart("samples", String.valueOf(samples));
+
+        return builder.build();
+    }
+
+    private int call(GenerationRequest generation, ArtifactSink sink, ProviderCallLimiter.Permit permit)
+            throws IOException {
+        byte[] original = generation.original();
+        byte[] styleReference = generation.styleReference();
+        int samples = generation.samples();
+
+        // Validate images are not empty
+        if (original.length == 0) {
+            throw new IOException("Original image is empty");
+        }
+        if (styleReference.length == 0) {
+            throw new IOException("Style reference image is empty");
+        }
+
+        RequestBody requestBody = requestBody(original, generation.prompt(), samples);
+        long payloadBytes = requestBody.contentLength();
+        requestPayload.record(payloadBytes);
+
+        Request request = new Request.Builder()
+                .url(stabilityEndpoint)
+                .post(requestBody)
+                .addHeader("Authorization", "Bearer " + stabilityApiKey)
+                .addHeader("Accept", "application/json")
+                .build();
+
+        if (LogContext.debugSampled(log)) {
+            log.debug("Calling Stability AI at {}: original {} bytes, style reference {} bytes, payload {} bytes, "
+                            + "samples {}, prompt '{}'",
+                    LogPayloads.redactUrl(stabilityEndpoint), original.length, styleReference.length, payloadBytes,
+                    samples, LogPayloads.truncate(generation.prompt()));
+        }
+
+        try {
+            long allocatedBefore = ThreadAllocation.current();
+            try (Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    if (response.code() == 429 || response.code() >= 500) {
+                        permit.onOverload();
+                    }
+                    // Error bodies are small JSON messages, so only they are read as a string, and only a prefix
+                    String errorBody = LogPayloads.truncate(response.peekBody(ERROR_BODY_LIMIT).string());
+                    log.warn("Stability API responded {}: {}", response.code(), errorBody);
+                    if (response.code() == 429) {
+                        throw new ProviderBusyException("Stability API rate limit exceeded", retryAfter(response));
+                    }
+                    throw new StabilityApiException(response.code(),
+                            "Stability API failed with code " + response.code() + ": " + errorBody);
+                }
+
+                permit.onSuccess();
+
+                // Decode the artifacts straight off the socket instead of buffering the whole base64 JSON
+                int images;
+                long decodeStart = System.nanoTime();
+                try {
+                    images = StabilityResponseParser.parseArtifacts(response.body().byteStream(), sink);
+                    responseDecode.record(System.nanoTime() - decodeStart, TimeUnit.NANOSECONDS);
+                } catch (JsonProcessingException e) {
+                    // Only malformed JSON lands here; a read timeout still propagates as such
+                    log.warn("Could not parse Stability API response: {}", e.getMessage());
+                    throw new StabilityApiException(response.code(), "Failed to parse response: " + e.getMessage());
+                }
+
+                if (images == 0) {
+                    throw new StabilityApiException(response.code(), "No image data found in response");
+                }
+
+                long allocatedAfter = ThreadAllocation.current();
+                if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                    responseAllocation.record(allocatedAfter - allocatedBefore);
+                }
+
+                if (LogContext.debugSampled(log)) {
+                    log.debug("Stability AI returned {} of {} requested image(s), response handling allocated {} bytes",
+                            images, samples, allocatedBefore >= 0 && allocatedAfter >= 0
+                                    ? allocatedAfter - allocatedBefore : "unknown");
+                }
+                return images;
+            }
+        } catch (InterruptedIOException e) {
+            // Read timeouts and OkHttp's call timeout ("timeout") both mean a slow provider; an interrupt does not
+            if (!Thread.currentThread().isInterrupted()) {
+                permit.onOverload();
+            }
+            throw e;
+        }
+    }
+
+    private ProviderCallLimiter.Permit acquirePermit() throws IOException {
+        try {
+            return callLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a provider slot");
+        }
+    }
+
+    private static long retryAfter(Response response) {
+        try {
+            return Long.parseLong(response.header("Retry-After", "10").trim());
+        } catch (NumberFormatException e) {
+            return 10;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pulls the images out of a Stability AI generation response without
+ * materializing the JSON: the parser walks {@code artifacts[*]} and decodes
+ * each {@code base64} value chunk by chunk into an {@link ArtifactSink}, so no
+ * copy of the encoded or decoded image is ever held as a whole.
+ */
+final class StabilityResponseParser {
+
+    private static final Logger log = LoggerFactory.getLogger(StabilityResponseParser.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private StabilityResponseParser() {
+    }
+
+    /** Returns the number of artifacts kept by the sink. */
+    static int parseArtifacts(InputStream body, ArtifactSink sink) throws IOException {
+        int kept = 0;
+
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Response is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("artifacts".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        if (readArtifact(parser, sink)) kept++;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return kept;
+    }
+
+    private static boolean readArtifact(JsonParser parser, ArtifactSink sink) throws IOException {
+        boolean written = false;
+        String finishReason = null;
+
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("base64".equals(field) && !written) {
+                    written = true;
+                    try (OutputStream out = sink.begin()) {
+                        parser.readBinaryValue(out);
+                    }
+                } else if ("finishReason".equals(field)) {
+                    finishReason = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A read timeout or a truncated body leaves a half-written artifact behind
+            if (written) sink.abort();
+            throw e;
+        }
+        if (!written) return false;
+
+        // Filtered artifacts come back as a blurred placeholder; they are not a usable result.
+        // finishReason follows base64 in the payload, so the decision is only made here.
+        boolean keep = !"CONTENT_FILTERED".equals(finishReason);
+        if (!keep) {
+            log.warn("Skipping artifact filtered by the provider");
+        }
+        sink.end(keep);
+        return keep;
+    }
+}
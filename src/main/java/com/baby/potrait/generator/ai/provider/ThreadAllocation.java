@@ -0,0 +1,31 @@
+package com.baby.potrait.generator.ai.provider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Bytes allocated by the current thread, for measuring the heap cost of a
+ * piece of work. Returns -1 where the JVM cannot tell, which includes
+ * virtual threads.
+ */
+final class ThreadAllocation {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    private ThreadAllocation() {
+    }
+
+    static long current() {
+        if (THREADS == null || Thread.currentThread().isVirtual()) return -1;
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean threads && threads.isThreadAllocatedMemorySupported()) {
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit. Each successful call within the latency budget grows
+ * the limit by roughly one per window; an overload signal (429/5xx) or a
+ * latency well above the smoothed baseline shrinks it multiplicatively.
+ * Callers beyond the limit wait in a bounded queue.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BASELINE_SMOOTHING = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private double baselineNanos = -1;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                                    double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.maxQueue = maxQueue;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    public enum AcquireResult { ACQUIRED, QUEUE_FULL, TIMEOUT }
+
+    public AcquireResult acquire(long maxWaitNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return AcquireResult.ACQUIRED;
+            }
+            if (waiting >= maxQueue) {
+                return AcquireResult.QUEUE_FULL;
+            }
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        return AcquireResult.TIMEOUT;
+                    }
+                    remaining = slotFreed.awaitNanos(remaining);
+                }
+                inFlight++;
+                return AcquireResult.ACQUIRED;
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long latencyNanos) {
+        lock.lock();
+        try {
+            if (baselineNanos < 0) {
+                baselineNanos = latencyNanos;
+            }
+            if (latencyNanos > baselineNanos * latencyTolerance) {
+                decrease();
+            } else {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            baselineNanos += (latencyNanos - baselineNanos) * BASELINE_SMOOTHING;
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onOverload() {
+        lock.lock();
+        try {
+            decrease();
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Releases a slot without treating the call as a signal either way (e.g. a client error). */
+    public void onIgnore() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        limit = Math.max(minLimit, limit * backoffRatio);
+    }
+
+    private void release() {
+        inFlight--;
+        slotFreed.signalAll();
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
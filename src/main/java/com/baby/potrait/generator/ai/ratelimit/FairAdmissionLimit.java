@@ -0,0 +1,174 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed in-flight limit with a bounded wait queue, shared fairly between
+ * clients. A client may hold at most {@code maxPerClient} slots, in flight
+ * and waiting together. When a slot frees, it goes to the waiting client with
+ * the fewest calls in flight, earliest arrival first, so one busy client
+ * cannot starve the others.
+ */
+public class FairAdmissionLimit {
+
+    private final int maxInFlight;
+    private final int maxQueue;
+    private final int maxPerClient;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Client> clients = new HashMap<>();
+
+    private int inFlight;
+    private int waiting;
+    private long arrivals;
+
+    public FairAdmissionLimit(int maxInFlight, int maxQueue, int maxPerClient) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxPerClient = Math.max(1, maxPerClient);
+    }
+
+    public enum AcquireResult { ACQUIRED, CLIENT_LIMIT, QUEUE_FULL, TIMEOUT }
+
+    public AcquireResult acquire(String clientKey, long maxWaitNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            Client client = clients.computeIfAbsent(clientKey, k -> new Client());
+            if (client.inFlight + client.waiters.size() >= maxPerClient) {
+                return AcquireResult.CLIENT_LIMIT;
+            }
+            // Nobody may overtake callers that are already queued
+            if (inFlight < maxInFlight && waiting == 0) {
+                client.inFlight++;
+                inFlight++;
+                return AcquireResult.ACQUIRED;
+            }
+            if (waiting >= maxQueue) {
+                forgetIfIdle(clientKey, client);
+                return AcquireResult.QUEUE_FULL;
+            }
+
+            Waiter waiter = new Waiter(arrivals++, lock.newCondition());
+            client.waiters.addLast(waiter);
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (!waiter.granted) {
+                    if (remaining <= 0) {
+                        client.waiters.remove(waiter);
+                        waiting--;
+                        forgetIfIdle(clientKey, client);
+                        return AcquireResult.TIMEOUT;
+                    }
+                    remaining = waiter.signal.awaitNanos(remaining);
+                }
+                return AcquireResult.ACQUIRED;
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    // The slot was handed over just before the interrupt; pass it on
+                    releaseLocked(clientKey, client);
+                } else {
+                    client.waiters.remove(waiter);
+                    waiting--;
+                    forgetIfIdle(clientKey, client);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(String clientKey) {
+        lock.lock();
+        try {
+            Client client = clients.get(clientKey);
+            if (client != null && client.inFlight > 0) {
+                releaseLocked(clientKey, client);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(String clientKey, Client client) {
+        client.inFlight--;
+        inFlight--;
+        forgetIfIdle(clientKey, client);
+        dispatch();
+    }
+
+    /** Hands free slots to the waiting client with the fewest calls in flight. */
+    private void dispatch() {
+        while (inFlight < maxInFlight && waiting > 0) {
+            Client next = null;
+            for (Client candidate : clients.values()) {
+                if (candidate.waiters.isEmpty()) continue;
+                if (next == null || candidate.inFlight < next.inFlight
+                        || (candidate.inFlight == next.inFlight
+                        && candidate.waiters.peekFirst().arrival < next.waiters.peekFirst().arrival)) {
+                    next = candidate;
+                }
+            }
+            Waiter waiter = next.waiters.pollFirst();
+            waiting--;
+            next.inFlight++;
+            inFlight++;
+            waiter.granted = true;
+            waiter.signal.signal();
+        }
+    }
+
+    private void forgetIfIdle(String clientKey, Client client) {
+        if (client.inFlight == 0 && client.waiters.isEmpty()) {
+            clients.remove(clientKey);
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getClients() {
+        lock.lock();
+        try {
+            return clients.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Client {
+        int inFlight;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private static final class Waiter {
+        final long arrival;
+        final Condition signal;
+        boolean granted;
+
+        Waiter(long arrival, Condition signal) {
+            this.arrival = arrival;
+            this.signal = signal;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Admission control for the generation endpoints, job submission included.
+ * Requests beyond the in-flight limit wait in a bounded queue for at most
+ * {@code max-wait}; past that they are answered at once with 503, and a client
+ * over its own share with 429, both with {@code Retry-After}. It runs before
+ * the multipart body is parsed, so a turned-away request costs next to nothing.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class GenerationAdmissionFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationAdmissionFilter.class);
+
+    private final boolean enabled;
+    private final Set<String> paths;
+    private final FairAdmissionLimit limit;
+    private final long maxWaitNanos;
+
+    private final Timer waitTimer;
+    private final Counter rejectedClientLimit;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public GenerationAdmissionFilter(MeterRegistry registry,
+                                     @Value("${generation.admission.enabled:true}") boolean enabled,
+                                     @Value("${generation.admission.paths:/api/generate,/api/generate/batch,/api/generate/jobs}") String paths,
+                                     @Value("${generation.admission.max-in-flight:48}") int maxInFlight,
+                                     @Value("${generation.admission.max-queue:64}") int maxQueue,
+                                     @Value("${generation.admission.max-wait:5s}") Duration maxWait,
+                                     @Value("${generation.admission.per-client-limit:4}") int perClientLimit) {
+        this.enabled = enabled;
+        this.paths = Arrays.stream(paths.split(","))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        this.limit = new FairAdmissionLimit(maxInFlight, maxQueue, perClientLimit);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        Gauge.builder("generation.admission.in_flight", limit, FairAdmissionLimit::getInFlight)
+                .register(registry);
+        Gauge.builder("generation.admission.queue_depth", limit, FairAdmissionLimit::getWaiting)
+                .register(registry);
+        Gauge.builder("generation.admission.clients", limit, FairAdmissionLimit::getClients)
+                .register(registry);
+        this.waitTimer = Timer.builder("generation.admission.wait").register(registry);
+        this.rejectedClientLimit = rejections(registry, "client_limit");
+        this.rejectedQueueFull = rejections(registry, "queue_full");
+        this.rejectedTimeout = rejections(registry, "timeout");
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("generation.admission.rejections").tag("reason", reason).register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod())
+                || !paths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String client = clientKey(request);
+
+        long waitStart = System.nanoTime();
+        FairAdmissionLimit.AcquireResult result;
+        try {
+            result = limit.acquire(client, maxWaitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted waiting for a generation slot", e);
+        }
+        waitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+
+        switch (result) {
+            case CLIENT_LIMIT -> {
+                rejectedClientLimit.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many generations in progress for this client");
+            }
+            case QUEUE_FULL -> {
+                rejectedQueueFull.increment();
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Too many generations waiting, try again shortly");
+            }
+            case TIMEOUT -> {
+                rejectedTimeout.increment();
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, "Timed out waiting for a generation slot");
+            }
+            default -> {
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    limit.release(client);
+                }
+            }
+        }
+    }
+
+    /** The authenticated user when there is one, otherwise the client address. */
+    private static String clientKey(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        // Behind a proxy this is the forwarded address when server.forward-headers-strategy is set
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        log.info("Generation request rejected with {}: {}", status.value(), message);
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds()));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Error: " + message);
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, maxWaitNanos / 1_000_000_000L);
+    }
+}
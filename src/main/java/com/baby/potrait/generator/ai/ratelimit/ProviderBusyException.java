@@ -0,0 +1,23 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call to an upstream provider is refused locally because the
+ * client-side rate or concurrency limit could not be met within the wait budget.
+ */
+public class ProviderBusyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public ProviderBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,124 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Client-side limiter in front of the Stability AI call: a token bucket for
+ * the provider's request rate plus an adaptive concurrency limit that backs
+ * off on 429/5xx and latency growth. Waiting is bounded by {@code max-wait};
+ * callers that cannot get through in time get a {@link ProviderBusyException}.
+ */
+@Component
+public class ProviderCallLimiter {
+
+    private final TokenBucket tokenBucket;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final long maxWaitNanos;
+
+    private final Counter rejectedRate;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+    private final Counter overloads;
+
+    public ProviderCallLimiter(MeterRegistry registry,
+                               @Value("${stability.limiter.rate-per-second:10}") double ratePerSecond,
+                               @Value("${stability.limiter.burst:10}") int burst,
+                               @Value("${stability.limiter.initial-concurrency:8}") int initialConcurrency,
+                               @Value("${stability.limiter.min-concurrency:1}") int minConcurrency,
+                               @Value("${stability.limiter.max-concurrency:32}") int maxConcurrency,
+                               @Value("${stability.limiter.max-queue:64}") int maxQueue,
+                               @Value("${stability.limiter.max-wait:30s}") Duration maxWait,
+                               @Value("${stability.limiter.backoff-ratio:0.7}") double backoffRatio,
+                               @Value("${stability.limiter.latency-tolerance:2.0}") double latencyTolerance) {
+        this.tokenBucket = new TokenBucket(ratePerSecond, burst);
+        this.concurrencyLimit = new AdaptiveConcurrencyLimit(initialConcurrency, minConcurrency, maxConcurrency,
+                maxQueue, backoffRatio, latencyTolerance);
+        this.maxWaitNanos = maxWait.toNanos();
+
+        Gauge.builder("stability.limiter.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .register(registry);
+        Gauge.builder("stability.limiter.in_flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .register(registry);
+        Gauge.builder("stability.limiter.queue_depth", concurrencyLimit, AdaptiveConcurrencyLimit::getWaiting)
+                .register(registry);
+        this.rejectedRate = rejections(registry, "rate");
+        this.rejectedQueueFull = rejections(registry, "queue_full");
+        this.rejectedTimeout = rejections(registry, "timeout");
+        this.overloads = Counter.builder("stability.limiter.overloads").register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("stability.limiter.rejections").tag("reason", reason).register(registry);
+    }
+
+    public Permit acquire() throws ProviderBusyException, InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+
+        long tokenWait = tokenBucket.reserve(maxWaitNanos);
+        if (tokenWait < 0) {
+            rejectedRate.increment();
+            throw new ProviderBusyException("Provider rate limit reached", retryAfterSeconds());
+        }
+        if (tokenWait > 0) {
+            LockSupport.parkNanos(tokenWait);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+
+        switch (concurrencyLimit.acquire(Math.max(0, deadline - System.nanoTime()))) {
+            case QUEUE_FULL -> {
+                rejectedQueueFull.increment();
+                throw new ProviderBusyException("Too many generations waiting for the provider", retryAfterSeconds());
+            }
+            case TIMEOUT -> {
+                rejectedTimeout.increment();
+                throw new ProviderBusyException("Timed out waiting for a provider slot", retryAfterSeconds());
+            }
+            default -> {
+                return new Permit();
+            }
+        }
+    }
+
+    /** True while a full round of calls is already queued behind the concurrency limit. */
+    public boolean isSaturated() {
+        return concurrencyLimit.getWaiting() >= concurrencyLimit.getLimit();
+    }
+
+    private long retryAfterSeconds() {
+        return Math.max(1, maxWaitNanos / 1_000_000_000L);
+    }
+
+    /** One admitted call. Exactly one outcome method releases the slot; later calls are ignored. */
+    public final class Permit implements AutoCloseable {
+
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        public void onSuccess() {
+            if (released) return;
+            released = true;
+            concurrencyLimit.onSuccess(System.nanoTime() - startNanos);
+        }
+
+        public void onOverload() {
+            if (released) return;
+            released = true;
+            overloads.increment();
+            concurrencyLimit.onOverload();
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            concurrencyLimit.onIgnore();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Classic token bucket. Callers reserve a token and are told how long to wait
+ * for it; a reservation that would exceed the caller's deadline is refused.
+ * Uses a ReentrantLock rather than synchronized so waiting virtual threads do not pin.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Reserves one token. Returns the nanoseconds the caller must wait before
+     * using it, or -1 if that wait would exceed {@code maxWaitNanos}.
+     */
+    public long reserve(long maxWaitNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+
+            long waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            // Tokens may go negative: later callers queue up behind this reservation
+            tokens -= 1;
+            return waitNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
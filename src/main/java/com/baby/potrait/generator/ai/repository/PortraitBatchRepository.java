@@ -0,0 +1,67 @@
+package com.baby.potrait.generator.ai.repository;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Inserts many portraits as one JDBC batch. Hibernate cannot batch inserts for
+ * IDENTITY ids, so this goes through plain JDBC and reads the generated ids back.
+ * With {@code reWriteBatchedInserts} the PostgreSQL driver sends a single multi-row INSERT.
+ */
+@Repository
+public class PortraitBatchRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO portraits "
+            + "(uploaded_file_name, uploaded_file_url, generated_image_url, content_hash, generation_params, "
+            + "status, error_message, style_id, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PortraitBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Portrait> insertAll(List<Portrait> portraits) {
+        if (portraits.isEmpty()) return portraits;
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"})) {
+                LocalDateTime now = LocalDateTime.now();
+                for (Portrait portrait : portraits) {
+                    if (portrait.getCreatedAt() == null) portrait.setCreatedAt(now);
+
+                    ps.setString(1, portrait.getUploadedFileName());
+                    ps.setString(2, portrait.getUploadedFileUrl());
+                    ps.setString(3, portrait.getGeneratedImageUrl());
+                    ps.setString(4, portrait.getContentHash());
+                    ps.setString(5, portrait.getGenerationParams());
+                    ps.setString(6, portrait.getStatus() != null ? portrait.getStatus().name() : null);
+                    ps.setString(7, portrait.getErrorMessage());
+                    ps.setObject(8, portrait.getStyle() != null ? portrait.getStyle().getId() : null, Types.BIGINT);
+                    ps.setTimestamp(9, Timestamp.valueOf(portrait.getCreatedAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < portraits.size()) {
+                        portraits.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+        return portraits;
+    }
+}
@@ -1,13 +1,46 @@
 package com.baby.potrait.generator.ai.repository;
 
 import com.baby.potrait.generator.ai.entity.Portrait;
-import com.baby.potrait.generator.ai.entity.User;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface PortraitRepository extends JpaRepository<Portrait,Long> {
 
-    List<Portrait> findByUser(User user);
+    /*
+     * History is paged by keyset on (createdAt, id), newest first, served by the
+     * idx_portraits_created / idx_portraits_user_created indexes. The style name
+     * comes from the same query through the join; a DTO projection cannot use
+     * "join fetch", and does not need to since no entity is loaded.
+     */
+    String SUMMARY = "select new com.baby.potrait.generator.ai.repository.PortraitSummary("
+            + "p.id, coalesce(p.generatedImageUrl, p.uploadedFileUrl), s.name, p.createdAt) "
+            + "from Portrait p left join p.style s ";
+    String NEWEST_FIRST = " order by p.createdAt desc, p.id desc";
+    String AFTER_CURSOR = "(p.createdAt < :createdAt or (p.createdAt = :createdAt and p.id < :id))";
+
+    @Query(SUMMARY + NEWEST_FIRST)
+    List<PortraitSummary> findHistory(Limit limit);
+
+    @Query(SUMMARY + "where " + AFTER_CURSOR + NEWEST_FIRST)
+    List<PortraitSummary> findHistoryAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                           Limit limit);
+
+    @Query(SUMMARY + "where p.user.id = :userId" + NEWEST_FIRST)
+    List<PortraitSummary> findUserHistory(@Param("userId") Long userId, Limit limit);
+
+    @Query(SUMMARY + "where p.user.id = :userId and " + AFTER_CURSOR + NEWEST_FIRST)
+    List<PortraitSummary> findUserHistoryAfter(@Param("userId") Long userId,
+                                               @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                               Limit limit);
+
+    Optional<Portrait> findFirstByContentHashAndStyle_IdAndGenerationParamsAndStatusOrderByIdDesc(
+            String contentHash, Long styleId, String generationParams, PortraitStatus status);
 }
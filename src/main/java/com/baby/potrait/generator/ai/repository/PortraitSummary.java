@@ -0,0 +1,51 @@
+package com.baby.potrait.generator.ai.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the portrait history: only what the list view shows. Built
+ * directly by the history queries in {@link PortraitRepository}, so no
+ * entity or association is loaded for it.
+ */
+public class PortraitSummary {
+
+    // Cloudinary derives (and caches) the thumbnail from the URL, so no second upload is needed
+    private static final String UPLOAD_SEGMENT = "/image/upload/";
+    private static final String THUMBNAIL_TRANSFORMATION = "c_fill,w_256,h_256,q_auto,f_auto/";
+
+    private final Long id;
+    private final String thumbnailUrl;
+    private final String styleName;
+    private final LocalDateTime createdAt;
+
+    public PortraitSummary(Long id, String imageUrl, String styleName, LocalDateTime createdAt) {
+        this.id = id;
+        this.thumbnailUrl = thumbnailOf(imageUrl);
+        this.styleName = styleName;
+        this.createdAt = createdAt;
+    }
+
+    static String thumbnailOf(String imageUrl) {
+        if (imageUrl == null) return null;
+        int upload = imageUrl.indexOf(UPLOAD_SEGMENT);
+        if (upload < 0) return imageUrl;
+        int insertAt = upload + UPLOAD_SEGMENT.length();
+        return imageUrl.substring(0, insertAt) + THUMBNAIL_TRANSFORMATION + imageUrl.substring(insertAt);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public String getStyleName() {
+        return styleName;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,11 @@
+package com.baby.potrait.generator.ai.repository;
+
+import com.baby.potrait.generator.ai.entity.PortraitVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PortraitVariantRepository extends JpaRepository<PortraitVariant, Long> {
+
+    List<PortraitVariant> findByPortrait_IdOrderBySampleIndex(Long portraitId);
+}
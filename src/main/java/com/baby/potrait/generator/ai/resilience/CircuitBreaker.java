@@ -0,0 +1,132 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Count-based circuit breaker. After {@code failureThreshold} consecutive
+ * failures the circuit opens and calls fail fast with {@link CircuitOpenException}.
+ * Once {@code openDuration} has passed a single trial call is let through;
+ * its outcome closes the circuit or opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Predicate<Throwable> recordFailure;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Predicate<Throwable> recordFailure) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.recordFailure = recordFailure;
+    }
+
+    public <T> T call(Callable<T> work) throws Exception {
+        boolean trial = admit();
+        try {
+            T result = work.call();
+            onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (recordFailure.test(e)) {
+                onFailure();
+            } else if (trial) {
+                // The dependency answered, just not with something we can use
+                onSuccess();
+            }
+            throw e;
+        } finally {
+            if (trial) {
+                lock.lock();
+                try {
+                    trialInFlight = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    private boolean admit() throws CircuitOpenException {
+        lock.lock();
+        try {
+            if (state == State.CLOSED) {
+                return false;
+            }
+            long elapsed = System.nanoTime() - openedAt;
+            if (state == State.OPEN && elapsed >= openNanos) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                return true;
+            }
+            long remainingSeconds = Math.max(1, (openNanos - elapsed) / 1_000_000_000L);
+            throw new CircuitOpenException(name, remainingSeconds);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onSuccess() {
+        lock.lock();
+        try {
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onFailure() {
+        lock.lock();
+        try {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether a call made now would be let through; does not claim the half-open trial. */
+    public boolean isCallPermitted() {
+        lock.lock();
+        try {
+            return switch (state) {
+                case CLOSED -> true;
+                case OPEN -> System.nanoTime() - openedAt >= openNanos;
+                case HALF_OPEN -> !trialInFlight;
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+}
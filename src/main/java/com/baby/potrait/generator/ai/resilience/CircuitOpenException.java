@@ -0,0 +1,15 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+
+/**
+ * Thrown without calling the dependency while its circuit breaker is open.
+ */
+public class CircuitOpenException extends ProviderBusyException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String dependency, long retryAfterSeconds) {
+        super(dependency + " is unavailable, failing fast", retryAfterSeconds);
+    }
+}
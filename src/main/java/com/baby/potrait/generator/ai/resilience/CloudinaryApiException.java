@@ -0,0 +1,28 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import java.io.IOException;
+
+/**
+ * Cloudinary answered with an error. 5xx and rate-limit answers (429, and
+ * Cloudinary's own 420) are transient; anything else, such as a rejected or
+ * invalid file, will fail the same way again.
+ */
+public class CloudinaryApiException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public CloudinaryApiException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isTransient() {
+        return statusCode >= 500 || statusCode == 429 || statusCode == 420;
+    }
+}
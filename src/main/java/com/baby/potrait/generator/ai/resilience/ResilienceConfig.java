@@ -0,0 +1,120 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+/**
+ * Retry policies and circuit breakers per dependency. Calls are not hedged:
+ * a Stability call is paid for and not idempotent, so a second request in
+ * flight would double the cost whenever both complete, and hedging the
+ * Cloudinary uploads would only add load to a dependency that is already
+ * slow. Retries with backoff and the breakers cover the failures instead.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    @Value("${resilience.stability.max-attempts:3}")
+    private int stabilityMaxAttempts;
+
+    @Value("${resilience.stability.base-delay:1s}")
+    private Duration stabilityBaseDelay;
+
+    @Value("${resilience.stability.max-delay:10s}")
+    private Duration stabilityMaxDelay;
+
+    @Value("${resilience.stability.failure-threshold:5}")
+    private int stabilityFailureThreshold;
+
+    @Value("${resilience.stability.open-duration:30s}")
+    private Duration stabilityOpenDuration;
+
+    @Value("${resilience.cloudinary.max-attempts:4}")
+    private int cloudinaryMaxAttempts;
+
+    @Value("${resilience.cloudinary.base-delay:500ms}")
+    private Duration cloudinaryBaseDelay;
+
+    @Value("${resilience.cloudinary.max-delay:8s}")
+    private Duration cloudinaryMaxDelay;
+
+    @Value("${resilience.cloudinary.failure-threshold:5}")
+    private int cloudinaryFailureThreshold;
+
+    @Value("${resilience.cloudinary.open-duration:30s}")
+    private Duration cloudinaryOpenDuration;
+
+    @Bean
+    public CircuitBreaker stabilityCircuitBreaker(MeterRegistry registry) {
+        return register(registry, new CircuitBreaker("Stability AI", stabilityFailureThreshold,
+                stabilityOpenDuration, ResilienceConfig::isStabilityFailure));
+    }
+
+    @Bean
+    public RetryPolicy stabilityRetryPolicy() {
+        // A read timeout may mean the provider did the (paid) work, so only retry
+        // failures where nothing can have been generated
+        return new RetryPolicy(stabilityMaxAttempts, stabilityBaseDelay, stabilityMaxDelay,
+                ResilienceConfig::isStabilityOutage);
+    }
+
+    @Bean
+    public CircuitBreaker cloudinaryCircuitBreaker(MeterRegistry registry) {
+        return register(registry, new CircuitBreaker("Cloudinary", cloudinaryFailureThreshold,
+                cloudinaryOpenDuration, ResilienceConfig::isCloudinaryFailure));
+    }
+
+    @Bean
+    public RetryPolicy cloudinaryRetryPolicy() {
+        return new RetryPolicy(cloudinaryMaxAttempts, cloudinaryBaseDelay, cloudinaryMaxDelay,
+                ResilienceConfig::isCloudinaryFailure);
+    }
+
+    static boolean isStabilityOutage(Throwable e) {
+        if (e instanceof StabilityApiException api) {
+            return api.isTransient();
+        }
+        return e instanceof ConnectException
+                || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException;
+    }
+
+    /**
+     * What counts against the Stability breaker: outages plus timeouts, so a
+     * hung provider fails fast instead of costing every caller the full call
+     * timeout. Timeouts stay out of the retry predicate, since the provider
+     * may have done the paid work.
+     */
+    static boolean isStabilityFailure(Throwable e) {
+        if (isStabilityOutage(e)) {
+            return true;
+        }
+        // Socket and call timeouts; an interrupt of the calling thread is not the provider's doing
+        return e instanceof InterruptedIOException && !Thread.currentThread().isInterrupted();
+    }
+
+    static boolean isCloudinaryFailure(Throwable e) {
+        if (e instanceof CloudinaryApiException api) {
+            return api.isTransient();
+        }
+        // Network errors and timeouts; anything else is a problem with the request, not an outage
+        return e instanceof IOException && !(e instanceof ProviderBusyException);
+    }
+
+    private static CircuitBreaker register(MeterRegistry registry, CircuitBreaker breaker) {
+        Gauge.builder("resilience.circuit.open", breaker, b -> b.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("dependency", breaker.getName())
+                .register(registry);
+        return breaker;
+    }
+}
@@ -0,0 +1,54 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Retries a call with exponential backoff and full jitter. Only failures
+ * accepted by {@code retryOn} are retried; anything else is rethrown at once.
+ * Only wrap steps that are safe to repeat.
+ */
+public class RetryPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryPolicy.class);
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Predicate<Throwable> retryOn;
+
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Predicate<Throwable> retryOn) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.retryOn = retryOn;
+    }
+
+    public <T> T call(String operation, Callable<T> work) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.call();
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !retryOn.test(e)) {
+                    throw e;
+                }
+                long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+                long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+                log.warn("{} failed (attempt {}/{}), retrying in {} ms: {}",
+                        operation, attempt, maxAttempts, delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while backing off " + operation);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.baby.potrait.generator.ai.resilience;
+
+import java.io.IOException;
+
+/**
+ * Stability AI answered, but not with a usable image. 5xx answers are
+ * transient and may be retried; anything else will fail the same way again.
+ */
+public class StabilityApiException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public StabilityApiException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public boolean isTransient() {
+        return statusCode >= 500;
+    }
+}
@@ -0,0 +1,161 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.repository.PortraitBatchRepository;
+import com.baby.potrait.generator.ai.repository.StyleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * One photo across many styles: the original is decoded and normalized
+ * once, and archived once if any style needs a new generation, then the
+ * per-style generations fan out with bounded parallelism and all rows are
+ * written in a single batch.
+ */
+@Service
+public class BatchGenerationService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchGenerationService.class);
+
+    private final GenerateService generateService;
+    private final ImageService imageService;
+    private final UploadService uploadService;
+    private final StyleRepository styleRepository;
+    private final PortraitBatchRepository portraitBatchRepository;
+    private final ExecutorService generationExecutor;
+    private final ExecutorService batchExecutor;
+    private final int maxParallel;
+    private final int maxStyles;
+
+    public BatchGenerationService(GenerateService generateService,
+                                  ImageService imageService,
+                                  UploadService uploadService,
+                                  StyleRepository styleRepository,
+                                  PortraitBatchRepository portraitBatchRepository,
+                                  @Qualifier("generationExecutor") ExecutorService generationExecutor,
+                                  @Qualifier("batchExecutor") ExecutorService batchExecutor,
+                                  @Value("${generation.batch.max-parallel:4}") int maxParallel,
+                                  @Value("${generation.batch.max-styles:20}") int maxStyles) {
+        this.generateService = generateService;
+        this.imageService = imageService;
+        this.uploadService = uploadService;
+        this.styleRepository = styleRepository;
+        this.portraitBatchRepository = portraitBatchRepository;
+        this.generationExecutor = generationExecutor;
+        this.batchExecutor = batchExecutor;
+        this.maxParallel = maxParallel;
+        this.maxStyles = maxStyles;
+    }
+
+    public List<BatchItemResult> generateBatch(MultipartFile file, List<String> styleIds) throws Exception {
+        List<Style> styles = resolveStyles(styleIds);
+        if (styles.isEmpty()) {
+            throw new IllegalArgumentException("No styles selected");
+        }
+        if (styles.size() > maxStyles) {
+            throw new IllegalArgumentException("At most " + maxStyles + " styles per batch");
+        }
+        imageService.admit(file);
+
+        byte[] originalImg = imageService.resizeImage(file,
+                ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT);
+        String contentHash = ContentHash.sha256(originalImg);
+        // Started by the first style that is actually generated; when every style is reused it never runs
+        CompletableFuture<String> originalUrl = new CompletableFuture<>();
+        AtomicBoolean uploadStarted = new AtomicBoolean();
+        Supplier<CompletableFuture<String>> originalUpload = () -> {
+            if (uploadStarted.compareAndSet(false, true)) {
+                try {
+                    generationExecutor.execute(() -> {
+                        try {
+                            originalUrl.complete(uploadService.uploadFile(file));
+                        } catch (Exception e) {
+                            originalUrl.completeExceptionally(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    originalUrl.completeExceptionally(e);
+                }
+            }
+            return originalUrl;
+        };
+
+        // A fixed number of workers drain the styles, so at most maxParallel generations run at once.
+        // They wait on stages running on the generation executor, so they live on a pool of their own
+        Queue<Style> pending = new ConcurrentLinkedQueue<>(styles);
+        Queue<Portrait> done = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(maxParallel, styles.size()); i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                Style style;
+                while ((style = pending.poll()) != null) {
+                    done.add(generateOne(file, originalImg, contentHash, style, originalUpload));
+                }
+            }, batchExecutor));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture<?>[0])).join();
+        if (uploadStarted.get()) {
+            // It reads the multipart, which is gone once the request ends, even if every style using it failed
+            originalUrl.exceptionally(e -> null).join();
+        }
+
+        // Keep the requested style order in the response
+        List<Portrait> portraits = new ArrayList<>(done);
+        portraits.sort(Comparator.comparingInt(p -> styles.indexOf(p.getStyle())));
+        portraitBatchRepository.insertAll(portraits);
+
+        return portraits.stream().map(BatchItemResult::of).toList();
+    }
+
+    private Portrait generateOne(MultipartFile file, byte[] originalImg, String contentHash, Style style,
+                                 Supplier<CompletableFuture<String>> originalUpload) {
+        Portrait portrait = new Portrait();
+        portrait.setUploadedFileName(file.getOriginalFilename());
+        portrait.setStyle(style);
+        try {
+            GenerationResult result = generateService.generateNormalized(originalImg, contentHash, style, originalUpload);
+            result.applyTo(portrait);
+            portrait.setStatus(PortraitStatus.COMPLETED);
+        } catch (Exception e) {
+            log.warn("Batch generation failed for style {}: {}", style.getId(), e.getMessage());
+            portrait.setContentHash(contentHash);
+            portrait.setStatus(PortraitStatus.FAILED);
+            portrait.setErrorMessage(e.getMessage() != null && e.getMessage().length() > 1000
+                    ? e.getMessage().substring(0, 1000) : e.getMessage());
+        }
+        return portrait;
+    }
+
+    private List<Style> resolveStyles(List<String> styleIds) {
+        if (styleIds.size() == 1 && "all".equalsIgnoreCase(styleIds.get(0).trim())) {
+            return styleRepository.findAll();
+        }
+        List<Long> ids = styleIds.stream().map(String::trim).map(Long::valueOf).distinct().toList();
+        Map<Long, Style> found = styleRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Style::getId, Function.identity()));
+        if (found.size() != ids.size()) {
+            throw new IllegalArgumentException("Style not found");
+        }
+        return ids.stream().map(found::get).toList();
+    }
+}
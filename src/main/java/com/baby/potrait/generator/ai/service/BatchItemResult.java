@@ -0,0 +1,53 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+
+public class BatchItemResult {
+
+    private final Long portraitId;
+    private final Long styleId;
+    private final String styleName;
+    private final PortraitStatus status;
+    private final String generatedImageUrl;
+    private final String errorMessage;
+
+    public BatchItemResult(Long portraitId, Long styleId, String styleName, PortraitStatus status,
+                           String generatedImageUrl, String errorMessage) {
+        this.portraitId = portraitId;
+        this.styleId = styleId;
+        this.styleName = styleName;
+        this.status = status;
+        this.generatedImageUrl = generatedImageUrl;
+        this.errorMessage = errorMessage;
+    }
+
+    public static BatchItemResult of(Portrait portrait) {
+        return new BatchItemResult(portrait.getId(), portrait.getStyle().getId(), portrait.getStyle().getName(),
+                portrait.getStatus(), portrait.getGeneratedImageUrl(), portrait.getErrorMessage());
+    }
+
+    public Long getPortraitId() {
+        return portraitId;
+    }
+
+    public Long getStyleId() {
+        return styleId;
+    }
+
+    public String getStyleName() {
+        return styleName;
+    }
+
+    public PortraitStatus getStatus() {
+        return status;
+    }
+
+    public String getGeneratedImageUrl() {
+        return generatedImageUrl;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
@@ -1,214 +1,318 @@
 package com.baby.potrait.generator.ai.service;
 
-import okhttp3.*;
-import org.json.JSONObject;
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.logging.LogContext;
+import com.baby.potrait.generator.ai.logging.LogPayloads;
+import com.baby.potrait.generator.ai.provider.GenerationProvider;
+import com.baby.potrait.generator.ai.provider.GenerationProviderRouter;
+import com.baby.potrait.generator.ai.provider.GenerationRequest;
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 @Service
 public class GenerateService {
 
+    private static final Logger log = LoggerFactory.getLogger(GenerateService.class);
+
     private final UploadService uploadService;
     private final StyleService styleService;
-
-    @Value("${stability.api.key}")
-    private String stabilityApiKey;
-
-    private static final String STABILITY_ENDPOINT = "https://api.stability.ai/v1/generation/stable-diffusion-xl-1024-v1-0/image-to-image";
-    private final OkHttpClient client;
-    private static final int TARGET_WIDTH = 1024;
-    private static final int TARGET_HEIGHT = 1024;
-
-    public GenerateService(UploadService uploadService, StyleService styleService) {
+    private final ImageService imageService;
+    private final StyleReferenceCache styleReferenceCache;
+    private final PortraitService portraitService;
+    private final GenerationDeduplicator deduplicator;
+    private final ExecutorService generationExecutor;
+    private final GenerationProviderRouter providerRouter;
+    private final GeneratedImageSpool spool;
+    private final GenerationMetrics generationMetrics;
+
+    @Value("${generation.max-samples:4}")
+    private int maxSamples;
+
+    public GenerateService(UploadService uploadService,
+                           StyleService styleService,
+                           ImageService imageService,
+                           StyleReferenceCache styleReferenceCache,
+                           PortraitService portraitService,
+                           GenerationDeduplicator deduplicator,
+                           @Qualifier("generationExecutor") ExecutorService generationExecutor,
+                           GenerationProviderRouter providerRouter,
+                           GeneratedImageSpool spool,
+                           GenerationMetrics generationMetrics) {
         this.uploadService = uploadService;
         this.styleService = styleService;
+        this.imageService = imageService;
+        this.styleReferenceCache = styleReferenceCache;
+        this.portraitService = portraitService;
+        this.deduplicator = deduplicator;
+        this.generationExecutor = generationExecutor;
+        this.providerRouter = providerRouter;
+        this.spool = spool;
+        this.generationMetrics = generationMetrics;
+    }
 
-        this.client = new OkHttpClient.Builder()
-                .connectTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(120, TimeUnit.SECONDS)
-                .readTimeout(300, TimeUnit.SECONDS)
-                .callTimeout(360, TimeUnit.SECONDS)
-                .build();
+    public GenerationResult generateImage(MultipartFile originalFile, Long styleId) throws Exception {
+        return generateImage(originalFile, styleId, 1);
     }
-    private File resizeImage(File inputFile, int targetWidth, int targetHeight) throws IOException {
-        BufferedImage originalImage = ImageIO.read(inputFile);
-        BufferedImage resizedImage = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
 
-        Graphics2D g = resizedImage.createGraphics();
-        g.drawImage(originalImage, 0, 0, targetWidth, targetHeight, null);
-        g.dispose();
+    /**
+     * Generates {@code samples} variants in a single provider call. The first
+     * one is the portrait's primary image; the rest are returned alongside it.
+     */
+    public GenerationResult generateImage(MultipartFile originalFile, Long styleId, int samples) throws Exception {
+        if (samples < 1 || samples > maxSamples) {
+            throw new IllegalArgumentException("samples must be between 1 and " + maxSamples);
+        }
+        // Header only: an unusable file is turned away before the upload and the decode below start
+        imageService.admit(originalFile);
+
+        // The original is already in hand, so it is normalized from the upload rather than fetched back
+        return generate(() -> imageService.resizeImage(originalFile,
+                        ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT),
+                styleId,
+                samples,
+                () -> {
+                    String originalUrl = uploadService.uploadFile(originalFile);
+                    if (LogContext.debugSampled(log)) {
+                        log.debug("Original image uploaded to {}", LogPayloads.redactUrl(originalUrl));
+                    }
+                    return originalUrl;
+                });
+    }
 
-        File resizedFile = new File(inputFile.getParent(), "resized_" + inputFile.getName() + ".png");
-        ImageIO.write(resizedImage, "png", resizedFile);
+    /**
+     * Generates from an original on local disk, e.g. a queued job's upload.
+     * Normalization, the reuse lookup and the archival upload all run here,
+     * and a reused result skips the upload.
+     */
+    public GenerationResult generateFromFile(Path originalFile, Long styleId) throws Exception {
+        FileSystemResource original = new FileSystemResource(originalFile);
+        return generate(() -> imageService.resizeImage(original,
+                        ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT),
+                styleId,
+                1,
+                () -> uploadService.uploadFile(originalFile));
+    }
 
-        return resizedFile;
+    public GenerationResult generateFromUrl(String originalUrl, Long styleId) throws Exception {
+        return generate(() -> imageService.resizeImage(imageService.downloadImage(originalUrl),
+                        ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT),
+                styleId,
+                1,
+                () -> originalUrl);
     }
 
-    public String generateImage(MultipartFile originalFile, Long styleId) throws Exception {
-        // 1. Upload original to Cloudinary
-        String originalUrl = uploadService.uploadFile(originalFile);
-        System.out.println("Original image uploaded to: " + originalUrl);
+    // Only results of the primary provider are reused; degraded ones are generated again once it is back
+    private Optional<GenerationResult> findExisting(String contentHash, Style style, int samples) {
+        String params = paramsFor(providerRouter.primary(), style, samples);
+        return portraitService.findCompletedGeneration(contentHash, style.getId(), params)
+                .map(p -> {
+                    List<String> urls = samples > 1 ? portraitService.getVariantUrls(p.getId()) : List.of();
+                    return new GenerationResult(p.getUploadedFileUrl(),
+                            urls.isEmpty() ? List.of(p.getGeneratedImageUrl()) : urls,
+                            contentHash, params, true, Map.of());
+                });
+    }
 
-        // 2. Get style info
-        var styleOpt = styleService.getStyleById(styleId);
-        if (styleOpt.isEmpty()) throw new RuntimeException("Style not found");
-        var style = styleOpt.get();
-        String sampleUrl = style.getSampleImageUrl();
-        String prompt = style.getPrompt();
+    /**
+     * The reuse key besides photo and style id. It includes a fingerprint of
+     * the style's prompt and sample image, so editing a style stops earlier
+     * results from being reused for it.
+     */
+    private static String paramsFor(GenerationProvider provider, Style style, int samples) {
+        return provider.generationParams() + ";style=" + styleFingerprint(style) + ";samples=" + samples;
+    }
 
-        // 3. Download images locally with unique filenames
-        String timestamp = String.valueOf(System.currentTimeMillis());
-        File originalImg = resizeImage(downloadImage(originalUrl, "original_" + timestamp + ".png"),
-                TARGET_WIDTH, TARGET_HEIGHT);
-        File sampleImg = resizeImage(downloadImage(sampleUrl, "sample_" + timestamp + ".png"),
-                TARGET_WIDTH, TARGET_HEIGHT);
+    private static String styleFingerprint(Style style) {
+        String definition = style.getPrompt() + "\n" + style.getSampleImageUrl();
+        return ContentHash.sha256(definition.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+    }
 
-        try {
-            // 4. Call Stability AI
-            File generatedFile = callStabilityAI(originalImg, sampleImg, prompt);
+    /**
+     * Generates one style from an already normalized original. Used by batch
+     * generation, where the original is normalized and archived once for all
+     * styles; {@code originalUpload} starts or returns that shared archival
+     * upload and is only called when this style is actually generated.
+     */
+    public GenerationResult generateNormalized(byte[] originalImg, String contentHash, Style style,
+                                               Supplier<CompletableFuture<String>> originalUpload) throws Exception {
+        return observed(style.getId(), () -> {
+            StageTimings timings = generationMetrics.newTimings();
+            return generateNormalized(originalImg, contentHash, style, 1, sampleStage(style, timings),
+                    originalUpload::get, timings);
+        });
+    }
 
-            // 5. Upload generated image to Cloudinary
-            byte[] bytes = Files.readAllBytes(generatedFile.toPath());
-            return uploadService.uploadBytes(bytes, "generated-" + timestamp);
+    /** Counts the generation as in flight while it runs and records how it ended. */
+    private GenerationResult observed(Long styleId, Callable<GenerationResult> work) throws Exception {
+        GenerationMetrics.InFlight generation = generationMetrics.start();
+        String outcome = GenerationMetrics.OUTCOME_FAILED;
+        try {
+            GenerationResult result = work.call();
+            outcome = result.isReused() ? GenerationMetrics.OUTCOME_REUSED : GenerationMetrics.OUTCOME_GENERATED;
+            return result;
+        } catch (ProviderBusyException e) {
+            outcome = GenerationMetrics.OUTCOME_BUSY;
+            throw e;
         } finally {
-            // Clean up temporary files
-            cleanupFile(originalImg);
-            cleanupFile(sampleImg);
+            generation.finish(styleId, outcome);
         }
     }
 
-    private File callStabilityAI(File original, File styleReference, String prompt) throws IOException {
-        System.out.println("Calling Stability AI with:");
-        System.out.println("Original file: " + original.getAbsolutePath() + " (exists: " + original.exists() + ", size: " + original.length() + ")");
-        System.out.println("Style reference: " + styleReference.getAbsolutePath() + " (exists: " + styleReference.exists() + ", size: " + styleReference.length() + ")");
-        System.out.println("Prompt: " + prompt);
-
-        // Validate files exist and are not empty
-        if (!original.exists() || original.length() == 0) {
-            throw new IOException("Original image file is missing or empty");
-        }
-        if (!styleReference.exists() || styleReference.length() == 0) {
-            throw new IOException("Style reference image file is missing or empty");
-        }
+    /*
+     * Style lookup and normalization start together; the sample fetch follows the
+     * style lookup. The original upload is archival only and overlaps the provider
+     * call and result upload; only the final result waits for it.
+     */
+    private GenerationResult generate(Callable<byte[]> normalize, Long styleId, int samples,
+                                      Callable<String> originalUpload) throws Exception {
+        return observed(styleId, () -> runGeneration(normalize, styleId, samples, originalUpload));
+    }
 
-        // Build multipart request for image-to-image generation
-        MultipartBody.Builder builder = new MultipartBody.Builder().setType(MultipartBody.FORM);
+    private GenerationResult runGeneration(Callable<byte[]> normalize, Long styleId, int samples,
+                                           Callable<String> originalUpload) throws Exception {
+        StageTimings timings = generationMetrics.newTimings();
 
-        // Add the original image as init_image
-        builder.addFormDataPart("init_image", original.getName(), 
-            RequestBody.create(original, MediaType.parse("image/png")));
+        CompletableFuture<Style> styleStage = stage(timings, StageTimings.STYLE_LOOKUP,
+                () -> styleService.getStyleById(styleId)
+                        .orElseThrow(() -> new RuntimeException("Style not found")));
+        CompletableFuture<byte[]> normalizeStage = stage(timings, StageTimings.NORMALIZE, normalize);
+        CompletableFuture<byte[]> sampleStage = styleStage.thenComposeAsync(
+                selected -> sampleStage(selected, timings), generationExecutor);
 
-        // Add the prompt
-        builder.addFormDataPart("text_prompts[0][text]", prompt);
-        builder.addFormDataPart("text_prompts[0][weight]", "1");
+        byte[] originalImg = join(normalizeStage);
+        Style style = join(styleStage);
 
-        // Add negative prompt
-        builder.addFormDataPart("text_prompts[1][text]", "blurry, low quality, distorted, ugly, bad anatomy");
-        builder.addFormDataPart("text_prompts[1][weight]", "-1");
+        return generateNormalized(originalImg, ContentHash.sha256(originalImg), style, samples, sampleStage,
+                () -> stage(timings, StageTimings.ORIGINAL_UPLOAD, originalUpload), timings);
+    }
 
-        // Generation parameters
-        builder.addFormDataPart("image_strength", "0.35");
-        builder.addFormDataPart("cfg_scale", "7");
-        builder.addFormDataPart("steps", "30");
-        builder.addFormDataPart("samples", "1");
+    private GenerationResult generateNormalized(byte[] originalImg, String contentHash, Style style, int samples,
+                                                CompletableFuture<byte[]> sampleStage,
+                                                Callable<CompletableFuture<String>> originalUpload,
+                                                StageTimings timings) throws Exception {
+        Long styleId = style.getId();
+        String params = paramsFor(providerRouter.primary(), style, samples);
+
+        // Same normalized photo, style and params means the same result: reuse it
+        Optional<GenerationResult> existing = timings.time(StageTimings.DEDUP_LOOKUP,
+                () -> findExisting(contentHash, style, samples));
+        if (existing.isPresent()) {
+            log.info("Reusing earlier generation for content hash {}, style {}", contentHash, styleId);
+            return existing.get();
+        }
 
-        RequestBody requestBody = builder.build();
+        return deduplicator.execute(contentHash, styleId, params, () -> {
+            CompletableFuture<String> uploadStage = originalUpload.call();
+            GenerationRequest request = new GenerationRequest(originalImg, join(sampleStage), style.getPrompt(),
+                    samples);
 
-        Request request = new Request.Builder()
-                .url(STABILITY_ENDPOINT)
-                .post(requestBody)
-                .addHeader("Authorization", "Bearer " + stabilityApiKey)
-                .addHeader("Accept", "application/json")
-                .build();
+            GenerationProvider provider = providerRouter.select(samples);
+            Generated generated;
+            try {
+                generated = generateWith(provider, request, contentHash, style, timings);
+            } catch (ProviderBusyException e) {
+                GenerationProvider fallback = providerRouter.fallbackFor(provider, samples).orElseThrow(() -> e);
+                log.warn("Provider {} is busy ({}), serving a degraded result from {}",
+                        provider.name(), e.getMessage(), fallback.name());
+                generated = generateWith(fallback, request, contentHash, style, timings);
+            }
 
-        System.out.println("Making request to: " + STABILITY_ENDPOINT);
+            // Named after the dedup key, so concurrent generations never share a public_id
+            List<Path> images = generated.images();
+            String spoolKey = generated.spoolKey();
+            List<String> generatedUrls = timings.time(StageTimings.RESULT_UPLOAD,
+                    () -> uploadVariants(images, "generated-" + spoolKey));
+            String archivedUrl = join(uploadStage);
+            // Only now is the whole result in hand; until then a retry picks the paid-for images up from the spool
+            spool.remove(spoolKey, images.size());
+
+            log.info("Generated {} sample(s) for style {} with {}, stage timings (ms): {}",
+                    images.size(), styleId, generated.provider().name(), timings);
+            return new GenerationResult(archivedUrl, generatedUrls, contentHash,
+                    paramsFor(generated.provider(), style, samples), false, timings.asMap());
+        });
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            System.out.println("Response code: " + response.code());
+    private Generated generateWith(GenerationProvider provider, GenerationRequest request, String contentHash,
+                                   Style style, StageTimings timings) throws Exception {
+        // A previous attempt may have generated this already and only failed to upload it
+        String spoolKey = GeneratedImageSpool.key(contentHash, style.getId(),
+                paramsFor(provider, style, request.samples()));
+        Optional<List<Path>> spooled = spool.find(spoolKey, request.samples());
+        if (spooled.isPresent()) {
+            log.info("Reusing spooled generation {}", spoolKey);
+            return new Generated(provider, spoolKey, spooled.get());
+        }
 
-            String responseBody = response.body().string();
-            System.out.println("Response body: " + responseBody);
+        // Artifacts go straight into the spool; each provider attempt rewrites it from sample 0
+        int count = timings.time(StageTimings.PROVIDER_CALL,
+                () -> providerRouter.generate(provider, request, () -> spool.writer(spoolKey)));
+        List<Path> images = spool.find(spoolKey, count)
+                .orElseThrow(() -> new IOException("Spooled generation " + spoolKey + " is incomplete"));
+        return new Generated(provider, spoolKey, images);
+    }
 
-            if (!response.isSuccessful()) {
-                System.err.println("Stability API error response: " + responseBody);
-                throw new IOException("Stability API failed with code " + response.code() + ": " + responseBody);
-            }
+    private record Generated(GenerationProvider provider, String spoolKey, List<Path> images) {
+    }
 
-            JSONObject json = new JSONObject(responseBody);
+    /** Uploads every sample concurrently; the result keeps the provider's order. */
+    private List<String> uploadVariants(List<Path> images, String baseName) throws Exception {
+        if (images.size() == 1) {
+            return List.of(uploadService.uploadImage(images.get(0), baseName));
+        }
 
-            // Parse the response for artifacts
-            String base64 = null;
-            try {
-                if (json.has("artifacts") && json.getJSONArray("artifacts").length() > 0) {
-                    JSONObject artifact = json.getJSONArray("artifacts").getJSONObject(0);
-                    base64 = artifact.getString("base64");
-                } else {
-                    System.err.println("Unknown response format. Available keys: " + json.keySet());
-                    throw new IOException("Could not find image data in response. Response keys: " + json.keySet());
+        List<CompletableFuture<String>> uploads = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            Path image = images.get(i);
+            String name = i == 0 ? baseName : baseName + "-" + i;
+            uploads.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return uploadService.uploadImage(image, name);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
                 }
-            } catch (Exception e) {
-                System.err.println("Error parsing response: " + e.getMessage());
-                System.err.println("Full response: " + responseBody);
-                throw new IOException("Failed to parse response: " + e.getMessage());
-            }
-
-            if (base64 == null || base64.isEmpty()) {
-                throw new IOException("No image data found in response");
-            }
-
-            byte[] bytes = java.util.Base64.getDecoder().decode(base64);
-            String outputFilename = "generated_" + System.currentTimeMillis() + ".png";
-            File output = new File(System.getProperty("java.io.tmpdir"), outputFilename);
-            Files.write(output.toPath(), bytes);
+            }, generationExecutor));
+        }
 
-            System.out.println("Generated image saved to: " + output.getAbsolutePath() + " (size: " + bytes.length + " bytes)");
-            return output;
+        List<String> urls = new ArrayList<>(uploads.size());
+        for (CompletableFuture<String> upload : uploads) {
+            urls.add(join(upload));
         }
+        return urls;
     }
 
-    private MediaType getMediaTypeForFile(File file) {
-        String name = file.getName().toLowerCase();
-        if (name.endsWith(".webp")) return MediaType.parse("image/webp");
-        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return MediaType.parse("image/jpeg");
-        return MediaType.parse("image/png"); // default
+    private CompletableFuture<byte[]> sampleStage(Style style, StageTimings timings) {
+        return stage(timings, StageTimings.SAMPLE_FETCH, () -> styleReferenceCache.getReference(style));
     }
 
-    private File downloadImage(String url, String filename) throws IOException {
-        System.out.println("Downloading image from: " + url);
-
-        try (InputStream in = new URL(url).openStream()) {
-            // Create file in system temp directory to avoid permission issues
-            Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
-            File file = tempDir.resolve(filename).toFile();
-
-            Files.copy(in, file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-
-            System.out.println("Downloaded to: " + file.getAbsolutePath() + " (size: " + file.length() + " bytes)");
-            return file;
-        }
+    private <T> CompletableFuture<T> stage(StageTimings timings, String name, Callable<T> work) {
+        return CompletableFuture.supplyAsync(() -> timings.timeUnchecked(name, work), generationExecutor);
     }
 
-    private void cleanupFile(File file) {
-        if (file != null && file.exists()) {
-            try {
-                Files.delete(file.toPath());
-                System.out.println("Cleaned up temporary file: " + file.getName());
-            } catch (IOException e) {
-                System.err.println("Failed to cleanup file: " + file.getName() + " - " + e.getMessage());
-            }
+    private static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.provider.ArtifactSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Local copy of a generated image between the (paid) provider call and a
+ * successful Cloudinary upload. If the upload fails, the next attempt at the
+ * same generation picks the bytes up here instead of generating again.
+ * Entries nobody came back for are swept once they are older than the TTL,
+ * and the oldest go first whenever the spool outgrows its size cap.
+ */
+@Component
+public class GeneratedImageSpool {
+
+    private static final Logger log = LoggerFactory.getLogger(GeneratedImageSpool.class);
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Duration ttl;
+    private final long maxBytes;
+
+    public GeneratedImageSpool(@Value("${generation.spool.dir:${java.io.tmpdir}/generation-spool}") String directory,
+                               @Value("${generation.spool.ttl:24h}") Duration ttl,
+                               @Value("${generation.spool.max-bytes:1073741824}") long maxBytes)
+            throws IOException {
+        this.directory = Paths.get(directory);
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+    }
+
+    public static String key(String contentHash, Long styleId, String generationParams) {
+        return contentHash + "-" + styleId + "-"
+                + ContentHash.sha256(generationParams.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+    }
+
+    /**
+     * Returns the files of all {@code count} spooled samples, or empty unless
+     * every one of them is present. They stay until {@link #remove}.
+     */
+    public Optional<List<Path>> find(String key, int count) {
+        List<Path> images = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Path file = fileFor(key, i);
+            if (!Files.isRegularFile(file)) return Optional.empty();
+            images.add(file);
+        }
+        return Optional.of(images);
+    }
+
+    /**
+     * Returns a sink that decodes provider artifacts straight into the spool,
+     * numbering kept samples from 0. A new writer starts from sample 0 again,
+     * so each provider attempt should use its own.
+     */
+    ArtifactSink writer(String key) {
+        return new ArtifactSink() {
+            private int next;
+            private Path current;
+
+            @Override
+            public OutputStream begin() throws IOException {
+                current = Files.createTempFile(directory, key, ".part");
+                return new BufferedOutputStream(Files.newOutputStream(current), WRITE_BUFFER_SIZE);
+            }
+
+            @Override
+            public void end(boolean keep) throws IOException {
+                if (keep) {
+                    Files.move(current, fileFor(key, next++),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.deleteIfExists(current);
+                }
+                current = null;
+            }
+
+            @Override
+            public void abort() {
+                if (current == null) return;
+                try {
+                    Files.deleteIfExists(current);
+                } catch (IOException e) {
+                    log.warn("Could not remove partial spool file {}: {}", current, e.getMessage());
+                }
+                current = null;
+            }
+        };
+    }
+
+    public void remove(String key, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                Files.deleteIfExists(fileFor(key, i));
+            } catch (IOException e) {
+                log.warn("Could not remove spooled image {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes spooled images and leftover partial files last modified before
+     * the TTL, then the oldest remaining images until the spool fits its cap.
+     * An image swept between {@link #find} and its upload fails that upload,
+     * which is retried like any other upload failure.
+     */
+    @Scheduled(fixedDelayString = "${generation.spool.sweep-interval:10m}")
+    public void sweep() {
+        long expiredBefore = System.currentTimeMillis() - ttl.toMillis();
+        List<SpooledFile> kept = new ArrayList<>();
+        long totalBytes = 0;
+        int removed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (!attributes.isRegularFile()) continue;
+                    long modified = attributes.lastModifiedTime().toMillis();
+                    if (modified < expiredBefore) {
+                        if (Files.deleteIfExists(file)) removed++;
+                    } else if (!file.getFileName().toString().endsWith(".part")) {
+                        // Partial files are still being written; only the TTL applies to them
+                        kept.add(new SpooledFile(file, modified, attributes.size()));
+                        totalBytes += attributes.size();
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not sweep spooled file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not sweep the generation spool: {}", e.getMessage());
+            return;
+        }
+
+        if (totalBytes > maxBytes) {
+            kept.sort(Comparator.comparingLong(SpooledFile::modified));
+            for (SpooledFile file : kept) {
+                if (totalBytes <= maxBytes) break;
+                try {
+                    if (Files.deleteIfExists(file.path())) removed++;
+                    totalBytes -= file.size();
+                } catch (IOException e) {
+                    log.warn("Could not sweep spooled file {}: {}", file.path(), e.getMessage());
+                }
+            }
+        }
+        if (removed > 0) {
+            log.info("Swept {} files from the generation spool, {} bytes left", removed, totalBytes);
+        }
+    }
+
+    private record SpooledFile(Path path, long modified, long size) {
+    }
+
+    private Path fileFor(String key, int sampleIndex) {
+        return directory.resolve(sampleIndex == 0 ? key + ".png" : key + "-" + sampleIndex + ".png");
+    }
+}
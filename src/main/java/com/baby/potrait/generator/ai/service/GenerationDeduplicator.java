@@ -0,0 +1,60 @@
+package com.baby.potrait.generator.ai.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Single-flights identical generations: while one request for a given
+ * (content hash, style, params) is running, later ones wait for its result
+ * instead of calling the provider again. Scope is this node only; across
+ * nodes the persisted content hash catches repeats once the first finishes.
+ */
+@Component
+public class GenerationDeduplicator {
+
+    private final ConcurrentMap<Key, CompletableFuture<GenerationResult>> inFlight = new ConcurrentHashMap<>();
+
+    public GenerationResult execute(String contentHash, Long styleId, String generationParams,
+                                    Callable<GenerationResult> generation) throws Exception {
+        Key key = new Key(contentHash, styleId, generationParams);
+        CompletableFuture<GenerationResult> mine = new CompletableFuture<>();
+        CompletableFuture<GenerationResult> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            try {
+                GenerationResult shared = existing.get();
+                return new GenerationResult(shared.getOriginalUrl(), shared.getGeneratedUrls(),
+                        shared.getContentHash(), shared.getGenerationParams(), true, shared.getStageTimings());
+            } catch (ExecutionException e) {
+                throw unwrap(e.getCause());
+            }
+        }
+
+        try {
+            GenerationResult result = generation.call();
+            mine.complete(result);
+            return result;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Exception unwrap(Throwable cause) {
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+
+    private record Key(String contentHash, Long styleId, String generationParams) {
+    }
+}
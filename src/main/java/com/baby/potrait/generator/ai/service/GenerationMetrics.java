@@ -0,0 +1,85 @@
+package com.baby.potrait.generator.ai.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generation-level meters:
+ * <ul>
+ *   <li>{@code generation.stage{stage}}: duration of each pipeline stage (see {@link StageTimings})</li>
+ *   <li>{@code generation.requests{style,outcome}}: finished generations by outcome</li>
+ *   <li>{@code generation.duration{outcome}}: end-to-end time of a generation</li>
+ *   <li>{@code generation.in_flight}: generations currently running</li>
+ * </ul>
+ */
+@Component
+public class GenerationMetrics {
+
+    public static final String OUTCOME_GENERATED = "generated";
+    public static final String OUTCOME_REUSED = "reused";
+    public static final String OUTCOME_BUSY = "busy";
+    public static final String OUTCOME_FAILED = "failed";
+
+    private final MeterRegistry registry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+
+    public GenerationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("generation.in_flight", inFlight, AtomicInteger::get)
+                .description("Generations currently running")
+                .register(registry);
+    }
+
+    /** Timings for one generation that also feed the per-stage timers. */
+    public StageTimings newTimings() {
+        return new StageTimings(this);
+    }
+
+    void recordStage(String stage, long nanos) {
+        stageTimers.computeIfAbsent(stage, s -> Timer.builder("generation.stage")
+                        .tag("stage", s)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Marks a generation as started; the returned handle records how it ended. */
+    public InFlight start() {
+        inFlight.incrementAndGet();
+        return new InFlight(System.nanoTime());
+    }
+
+    public final class InFlight {
+
+        private final long startNanos;
+        private boolean finished;
+
+        private InFlight(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        public void finish(Long styleId, String outcome) {
+            if (finished) return;
+            finished = true;
+            inFlight.decrementAndGet();
+
+            Counter.builder("generation.requests")
+                    .tag("style", String.valueOf(styleId))
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .increment();
+            Timer.builder("generation.duration")
+                    .tag("outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
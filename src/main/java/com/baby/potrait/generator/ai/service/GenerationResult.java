@@ -0,0 +1,70 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+
+import java.util.List;
+import java.util.Map;
+
+public class GenerationResult {
+
+    private final String originalUrl;
+    private final List<String> generatedUrls;
+    private final String contentHash;
+    private final String generationParams;
+    private final boolean reused;
+    private final Map<String, Long> stageTimings;
+
+    public GenerationResult(String originalUrl, String generatedUrl, String contentHash,
+                            String generationParams, boolean reused) {
+        this(originalUrl, List.of(generatedUrl), contentHash, generationParams, reused, Map.of());
+    }
+
+    public GenerationResult(String originalUrl, List<String> generatedUrls, String contentHash,
+                            String generationParams, boolean reused, Map<String, Long> stageTimings) {
+        this.originalUrl = originalUrl;
+        this.generatedUrls = List.copyOf(generatedUrls);
+        this.contentHash = contentHash;
+        this.generationParams = generationParams;
+        this.reused = reused;
+        this.stageTimings = stageTimings;
+    }
+
+    public String getOriginalUrl() {
+        return originalUrl;
+    }
+
+    /** The primary (first) sample. */
+    public String getGeneratedUrl() {
+        return generatedUrls.get(0);
+    }
+
+    /** Every sample of a multi-sample generation, primary first. */
+    public List<String> getGeneratedUrls() {
+        return generatedUrls;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getGenerationParams() {
+        return generationParams;
+    }
+
+    /** True when an earlier generation of the same input was returned instead of calling the provider. */
+    public boolean isReused() {
+        return reused;
+    }
+
+    /** Milliseconds spent per stage, keyed by the {@link StageTimings} stage names. */
+    public Map<String, Long> getStageTimings() {
+        return stageTimings;
+    }
+
+    public void applyTo(Portrait portrait) {
+        portrait.setUploadedFileUrl(originalUrl);
+        portrait.setGeneratedImageUrl(getGeneratedUrl());
+        portrait.setContentHash(contentHash);
+        portrait.setGenerationParams(generationParams);
+    }
+}
@@ -0,0 +1,39 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.repository.PortraitSummary;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the history: the (createdAt, id) of the last row
+ * returned. Sent to clients as an opaque URL-safe token.
+ */
+record HistoryCursor(LocalDateTime createdAt, Long id) {
+
+    static HistoryCursor after(PortraitSummary last) {
+        return new HistoryCursor(last.getCreatedAt(), last.getId());
+    }
+
+    String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static HistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
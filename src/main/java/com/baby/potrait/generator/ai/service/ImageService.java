@@ -0,0 +1,89 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.image.ImageAdmission;
+import com.baby.potrait.generator.ai.image.ImageHeader;
+import com.baby.potrait.generator.ai.image.ImageNormalizer;
+import com.baby.potrait.generator.ai.logging.LogContext;
+import com.baby.potrait.generator.ai.logging.LogPayloads;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@Service
+public class ImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageService.class);
+
+    public static final int TARGET_WIDTH = 1024;
+    public static final int TARGET_HEIGHT = 1024;
+
+    private final OkHttpClient httpClient;
+    private final ImageNormalizer normalizer;
+    private final ImageAdmission admission;
+    private final Timer downloadTimer;
+    private final DistributionSummary downloadBytes;
+
+    public ImageService(OkHttpClient httpClient, ImageNormalizer normalizer, ImageAdmission admission,
+                        MeterRegistry registry) {
+        this.httpClient = httpClient;
+        this.normalizer = normalizer;
+        this.admission = admission;
+        this.downloadTimer = Timer.builder("image.download").register(registry);
+        this.downloadBytes = DistributionSummary.builder("image.download.bytes")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Checks an upload from its header alone, before anything is uploaded or
+     * decoded; throws {@link com.baby.potrait.generator.ai.image.ImageRejectedException}
+     * when it breaks a limit.
+     */
+    public ImageHeader admit(InputStreamSource source) throws IOException {
+        return admission.admit(source, TARGET_WIDTH, TARGET_HEIGHT);
+    }
+
+    /** Normalizes to the target size with the configured resize mode and scaling quality. */
+    public byte[] resizeImage(byte[] input, int targetWidth, int targetHeight) throws IOException {
+        return normalizer.normalize(input, targetWidth, targetHeight);
+    }
+
+    /** Same, reading the source as a stream, e.g. a multipart upload that may be spooled to disk. */
+    public byte[] resizeImage(InputStreamSource source, int targetWidth, int targetHeight) throws IOException {
+        try (InputStream in = source.getInputStream()) {
+            return normalizer.normalize(in, targetWidth, targetHeight);
+        }
+    }
+
+    public byte[] downloadImage(String url) throws IOException {
+        Request request = new Request.Builder().url(url).get().build();
+        Timer.Sample sample = Timer.start();
+        try (Response response = httpClient.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Download failed with code " + response.code() + ": "
+                        + LogPayloads.redactUrl(url));
+            }
+            byte[] bytes = body.bytes();
+            downloadBytes.record(bytes.length);
+
+            if (LogContext.debugSampled(log)) {
+                log.debug("Downloaded {} bytes from {}", bytes.length, LogPayloads.redactUrl(url));
+            }
+            return bytes;
+        } finally {
+            sample.stop(downloadTimer);
+        }
+    }
+}
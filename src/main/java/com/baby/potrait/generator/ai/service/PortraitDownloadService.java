@@ -0,0 +1,65 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@Service
+public class PortraitDownloadService {
+
+    private final OkHttpClient httpClient;
+    private final PortraitFileCache fileCache;
+
+    public PortraitDownloadService(OkHttpClient httpClient, PortraitFileCache fileCache) {
+        this.httpClient = httpClient;
+        this.fileCache = fileCache;
+    }
+
+    /**
+     * Strong validator for a portrait's image. The Cloudinary URL carries the
+     * public id and asset version, so it changes whenever the stored image
+     * could; a SHA-256 prefix of it keeps collisions out of reach.
+     */
+    public String etagFor(Portrait portrait) {
+        String urlHash = ContentHash.sha256(portrait.getGeneratedImageUrl().getBytes(StandardCharsets.UTF_8));
+        return "\"" + portrait.getId() + "-" + urlHash.substring(0, 16) + "\"";
+    }
+
+    public boolean isCacheEnabled() {
+        return fileCache.isEnabled();
+    }
+
+    /**
+     * Returns a lease on the locally cached image, fetching it from Cloudinary
+     * into the cache first when it is not there yet. The caller must close the
+     * lease once the file has been served. Only valid when the cache is enabled.
+     */
+    public PortraitFileCache.Lease cachedImage(Portrait portrait) throws IOException {
+        return fileCache.acquire(portrait.getId(), () -> {
+            Response response = openUpstream(portrait.getGeneratedImageUrl(), null);
+            if (!response.isSuccessful() || response.body() == null) {
+                response.close();
+                throw new IOException("Upstream fetch failed with code " + response.code());
+            }
+            // Closing the body stream closes the response
+            return response.body().byteStream();
+        });
+    }
+
+    /**
+     * Opens the image at Cloudinary, forwarding a Range header when given.
+     * The caller owns the response and must close it.
+     */
+    public Response openUpstream(String url, String range) throws IOException {
+        Request.Builder request = new Request.Builder().url(url).get();
+        if (range != null) {
+            request.header("Range", range);
+        }
+        return httpClient.newCall(request.build()).execute();
+    }
+}
@@ -0,0 +1,271 @@
+package com.baby.potrait.generator.ai.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded on-disk cache of generated portraits keyed by portrait id. Generated
+ * images never change once uploaded, so entries are only ever evicted for space,
+ * least recently read first. An entry is pinned while a {@link Lease} on it is
+ * open and is never evicted while pinned, and concurrent misses for the same
+ * portrait share a single download.
+ */
+@Component
+public class PortraitFileCache {
+
+    private static final Logger log = LoggerFactory.getLogger(PortraitFileCache.class);
+
+    private static final String SUFFIX = ".png";
+
+    /** Opens the upstream image on a miss; the cache closes the stream. */
+    @FunctionalInterface
+    public interface Loader {
+        InputStream open() throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Entry> index = new HashMap<>();
+    private final Map<Long, CompletableFuture<Void>> loading = new HashMap<>();
+    private long currentBytes;
+
+    public PortraitFileCache(@Value("${portrait.cache.enabled:true}") boolean enabled,
+                             @Value("${portrait.cache.dir:${java.io.tmpdir}/portrait-cache}") String directory,
+                             @Value("${portrait.cache.max-bytes:536870912}") long maxBytes) throws IOException {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxBytes;
+
+        if (enabled) {
+            Files.createDirectories(this.directory);
+            loadIndex();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a lease on the cached image, loading it first on a miss. If
+     * another caller is already loading the same portrait this waits for that
+     * download instead of starting a second one. The file stays on disk until
+     * the lease is closed. Only valid when the cache is enabled.
+     */
+    public Lease acquire(Long portraitId, Loader loader) throws IOException {
+        while (true) {
+            CompletableFuture<Void> load;
+            boolean owner = false;
+            lock.lock();
+            try {
+                Lease lease = pinLocked(portraitId);
+                if (lease != null) return lease;
+
+                load = loading.get(portraitId);
+                if (load == null) {
+                    load = new CompletableFuture<>();
+                    loading.put(portraitId, load);
+                    owner = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (owner) {
+                return load(portraitId, loader, load);
+            }
+            awaitLoad(load);
+            // Loaded by someone else; loop to pin it, or to load it again if it was evicted meanwhile
+        }
+    }
+
+    private Lease load(Long portraitId, Loader loader, CompletableFuture<Void> load) throws IOException {
+        try {
+            Lease lease;
+            try (InputStream in = loader.open()) {
+                lease = put(portraitId, in);
+            }
+            load.complete(null);
+            return lease;
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            lock.lock();
+            try {
+                loading.remove(portraitId);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static void awaitLoad(CompletableFuture<Void> load) throws IOException {
+        try {
+            load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the cached portrait", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Loading the cached portrait failed", e.getCause());
+        }
+    }
+
+    private Lease pinLocked(Long portraitId) {
+        Entry entry = index.get(portraitId);
+        if (entry == null) return null;
+
+        Path file = fileFor(portraitId);
+        if (entry.pins == 0 && !Files.exists(file)) {
+            removeLocked(portraitId);
+            return null;
+        }
+        entry.pins++;
+        entry.lastAccess = System.currentTimeMillis();
+        return new Lease(portraitId, entry, file);
+    }
+
+    private Lease put(Long portraitId, InputStream in) throws IOException {
+        Path tmp = Files.createTempFile(directory, portraitId + "-", ".part");
+        try {
+            long size = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Path file = fileFor(portraitId);
+
+            lock.lock();
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                Entry entry = new Entry(size, System.currentTimeMillis());
+                entry.pins = 1;
+                Entry previous = index.put(portraitId, entry);
+                currentBytes += size - (previous != null ? previous.size : 0);
+                evictIfNeeded();
+                return new Lease(portraitId, entry, file);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Evicts unpinned entries, least recently read first, until the cache fits. */
+    private void evictIfNeeded() {
+        if (currentBytes <= maxBytes) return;
+
+        List<Map.Entry<Long, Entry>> byAge = index.entrySet().stream()
+                .filter(e -> e.getValue().pins == 0)
+                .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                .toList();
+        for (Map.Entry<Long, Entry> candidate : byAge) {
+            if (currentBytes <= maxBytes) break;
+            removeLocked(candidate.getKey());
+        }
+    }
+
+    private void removeLocked(Long portraitId) {
+        Entry entry = index.remove(portraitId);
+        if (entry == null) return;
+
+        currentBytes -= entry.size;
+        try {
+            Files.deleteIfExists(fileFor(portraitId));
+        } catch (IOException e) {
+            log.warn("Failed to evict cached portrait {}: {}", portraitId, e.getMessage());
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        lock.lock();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    Long id = Long.valueOf(name.substring(0, name.length() - SUFFIX.length()));
+                    long size = Files.size(file);
+                    index.put(id, new Entry(size, Files.getLastModifiedTime(file).toMillis()));
+                    currentBytes += size;
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+            evictIfNeeded();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path fileFor(Long portraitId) {
+        return directory.resolve(portraitId + SUFFIX);
+    }
+
+    /**
+     * Keeps a cached file from being evicted while it is served. Closing it
+     * more than once is harmless.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Long portraitId;
+        private final Entry entry;
+        private final Path path;
+        private boolean closed;
+
+        private Lease(Long portraitId, Entry entry, Path path) {
+            this.portraitId = portraitId;
+            this.entry = entry;
+            this.path = path;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) return;
+                closed = true;
+                entry.pins--;
+                // Space that could not be reclaimed while this entry was pinned can be now
+                if (entry.pins == 0 && index.get(portraitId) == entry) {
+                    evictIfNeeded();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final long size;
+        long lastAccess;
+        int pins;
+
+        Entry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.repository.PortraitSummary;
+
+import java.util.List;
+
+/**
+ * A page of portrait history, newest first. {@code nextCursor} is passed back
+ * to get the following page and is null on the last one.
+ */
+public class PortraitPage {
+
+    private final List<PortraitSummary> items;
+    private final String nextCursor;
+
+    public PortraitPage(List<PortraitSummary> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<PortraitSummary> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
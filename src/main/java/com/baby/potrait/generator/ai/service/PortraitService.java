@@ -1,13 +1,21 @@
 package com.baby.potrait.generator.ai.service;
 
 import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+import com.baby.potrait.generator.ai.entity.PortraitVariant;
 import com.baby.potrait.generator.ai.entity.Style;
-import com.baby.potrait.generator.ai.entity.User;
 import com.baby.potrait.generator.ai.repository.PortraitRepository;
+import com.baby.potrait.generator.ai.repository.PortraitSummary;
+import com.baby.potrait.generator.ai.repository.PortraitVariantRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,13 +25,25 @@ public class PortraitService {
     private final PortraitRepository portraitRepository;
     private final UploadService uploadService;
     private final StyleService styleService;
+    private final PortraitVariantRepository portraitVariantRepository;
+    private final Timer saveTimer;
+
+    @Value("${portrait.history.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${portrait.history.max-page-size:100}")
+    private int maxPageSize;
 
     public PortraitService(PortraitRepository portraitRepository,
                            UploadService uploadService,
-                           StyleService styleService) {
+                           StyleService styleService,
+                           PortraitVariantRepository portraitVariantRepository,
+                           MeterRegistry registry) {
         this.portraitRepository = portraitRepository;
         this.uploadService = uploadService;
         this.styleService = styleService;
+        this.portraitVariantRepository = portraitVariantRepository;
+        this.saveTimer = Timer.builder("portrait.save").register(registry);
     }
 
     public Portrait uploadBabyPhoto(MultipartFile file) throws IOException {
@@ -33,18 +53,44 @@ public class PortraitService {
         return portraitRepository.save(portrait);
     }
 
-    public List<Portrait> getPortraitsByUser(User user) {
-        return portraitRepository.findByUser(user);
-    }
+    /**
+     * One page of portrait history, newest first, optionally for a single user.
+     * {@code size} is capped at {@code portrait.history.max-page-size}; a null
+     * {@code cursor} starts from the newest portrait.
+     */
+    public PortraitPage getHistory(Long userId, String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        // One extra row tells whether there is a next page without a count query
+        Limit limit = Limit.of(pageSize + 1);
 
-    public List<Portrait> getAllPortraits() {
-        return portraitRepository.findAll();
+        List<PortraitSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = userId == null
+                    ? portraitRepository.findHistory(limit)
+                    : portraitRepository.findUserHistory(userId, limit);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = userId == null
+                    ? portraitRepository.findHistoryAfter(after.createdAt(), after.id(), limit)
+                    : portraitRepository.findUserHistoryAfter(userId, after.createdAt(), after.id(), limit);
+        }
+
+        if (rows.size() <= pageSize) {
+            return new PortraitPage(rows, null);
+        }
+        List<PortraitSummary> page = rows.subList(0, pageSize);
+        return new PortraitPage(page, HistoryCursor.after(page.get(pageSize - 1)).encode());
     }
 
     public Optional<Portrait> getPortraitById(Long id) {
         return portraitRepository.findById(id);
     }
 
+    public Optional<Portrait> findCompletedGeneration(String contentHash, Long styleId, String generationParams) {
+        return portraitRepository.findFirstByContentHashAndStyle_IdAndGenerationParamsAndStatusOrderByIdDesc(
+                contentHash, styleId, generationParams, PortraitStatus.COMPLETED);
+    }
+
     public Portrait selectStyle(Long portraitId, Long styleId) {
         Portrait portrait = portraitRepository.findById(portraitId)
                 .orElseThrow(() -> new RuntimeException("Portrait not found"));
@@ -56,6 +102,24 @@ public class PortraitService {
     }
 
     public Portrait save(Portrait portrait) {
-        return portraitRepository.save(portrait);
+        return saveTimer.record(() -> portraitRepository.save(portrait));
+    }
+
+    /** Saves the portrait and, for multi-sample generations, every sample as a child variant. */
+    public Portrait saveWithVariants(Portrait portrait, List<String> sampleUrls) {
+        if (sampleUrls.size() > 1) {
+            List<PortraitVariant> variants = new ArrayList<>(sampleUrls.size());
+            for (int i = 0; i < sampleUrls.size(); i++) {
+                variants.add(new PortraitVariant(portrait, i, sampleUrls.get(i)));
+            }
+            portrait.setVariants(variants);
+        }
+        return saveTimer.record(() -> portraitRepository.save(portrait));
+    }
+
+    public List<String> getVariantUrls(Long portraitId) {
+        return portraitVariantRepository.findByPortrait_IdOrderBySampleIndex(portraitId).stream()
+                .map(PortraitVariant::getImageUrl)
+                .toList();
     }
 }
@@ -0,0 +1,65 @@
+package com.baby.potrait.generator.ai.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Wall-clock duration of each stage of one generation, also recorded in the
+ * {@code generation.stage} timers. Stages may run on different threads, so
+ * recording is synchronized.
+ */
+public class StageTimings {
+
+    public static final String NORMALIZE = "normalize";
+    public static final String STYLE_LOOKUP = "style_lookup";
+    public static final String DEDUP_LOOKUP = "dedup_lookup";
+    public static final String SAMPLE_FETCH = "sample_fetch";
+    public static final String ORIGINAL_UPLOAD = "original_upload";
+    public static final String PROVIDER_CALL = "provider_call";
+    public static final String RESULT_UPLOAD = "result_upload";
+
+    private final Map<String, Long> millis = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final GenerationMetrics metrics;
+
+    StageTimings(GenerationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public <T> T time(String stage, Callable<T> work) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            long nanos = System.nanoTime() - start;
+            millis.put(stage, nanos / 1_000_000);
+            metrics.recordStage(stage, nanos);
+        }
+    }
+
+    /** Same as {@link #time} for use inside CompletableFuture stages; failures surface as CompletionException. */
+    public <T> T timeUnchecked(String stage, Callable<T> work) {
+        try {
+            return time(stage, work);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    public Map<String, Long> asMap() {
+        synchronized (millis) {
+            return Map.copyOf(millis);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (millis) {
+            return millis.toString();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.repository.StyleRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Immutable snapshot of the style catalog, already serialized to the JSON
+ * that {@code GET /api/styles} returns, with a strong ETag over those bytes.
+ * Built on first use and rebuilt whenever a {@link StyleChangedEvent} says
+ * a style changed, so listing styles touches neither the database nor Jackson.
+ * The events only reach the node that made the change, so each node also
+ * rebuilds once its snapshot is older than {@code style.catalog.max-age};
+ * that bounds how long another node's edit can go unseen.
+ */
+@Component
+public class StyleCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(StyleCatalog.class);
+
+    private final StyleRepository styleRepository;
+    private final ObjectMapper objectMapper;
+    private final long maxAgeNanos;
+
+    // Not synchronized: the rebuild does JDBC I/O, and a monitor would pin virtual threads meanwhile
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong changes = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile long builtAt;
+    private long builtForChange;
+    private long version;
+
+    public StyleCatalog(StyleRepository styleRepository, ObjectMapper objectMapper,
+                        @Value("${style.catalog.max-age:5m}") Duration maxAge) {
+        this.styleRepository = styleRepository;
+        this.objectMapper = objectMapper;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            lock.lock();
+            try {
+                // Whoever held the lock first may have built it already
+                return snapshot != null ? snapshot : rebuildLocked();
+            } finally {
+                lock.unlock();
+            }
+        }
+        // One caller refreshes an expired snapshot; everyone else keeps serving the one in hand
+        if (System.nanoTime() - builtAt >= maxAgeNanos && lock.tryLock()) {
+            try {
+                if (System.nanoTime() - builtAt >= maxAgeNanos) {
+                    return rebuildLocked();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Style catalog refresh failed, serving version {}: {}", current.version(), e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    @EventListener
+    public void onStyleChanged(StyleChangedEvent event) {
+        long change = changes.incrementAndGet();
+        lock.lock();
+        try {
+            // A rebuild that started after this change was counted already covers it
+            if (builtForChange < change) {
+                rebuildLocked();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Under the lock, so a rebuild that started before a change can never overwrite a newer one
+    private Snapshot rebuildLocked() {
+        long change = changes.get();
+        List<Style> styles = List.copyOf(styleRepository.findAll());
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(styles);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not serialize style catalog", e);
+        }
+
+        Snapshot rebuilt = new Snapshot(++version, styles, json, etagOf(json));
+        builtForChange = change;
+        builtAt = System.nanoTime();
+        snapshot = rebuilt;
+        log.info("Style catalog version {} built: {} styles, {} bytes", rebuilt.version(), styles.size(), json.length);
+        return rebuilt;
+    }
+
+    // Content-based, so every node serving the same catalog hands out the same ETag
+    private static String etagOf(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** One catalog version; {@code json} must not be modified. */
+    public record Snapshot(long version, List<Style> styles, byte[] json, String etag) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.baby.potrait.generator.ai.service;
+
+/**
+ * Published by {@link StyleService} after a style has been created or modified,
+ * so anything derived from the style catalog can drop stale copies.
+ */
+public class StyleChangedEvent {
+
+    private final Long styleId;
+
+    public StyleChangedEvent(Long styleId) {
+        this.styleId = styleId;
+    }
+
+    public Long getStyleId() {
+        return styleId;
+    }
+}
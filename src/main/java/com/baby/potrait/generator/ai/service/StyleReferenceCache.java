@@ -0,0 +1,142 @@
+package com.baby.potrait.generator.ai.service;
+
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.repository.StyleRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the normalized (1024x1024) sample image of each style in memory so a
+ * generation does not download and resize the same reference every time.
+ * Bounded by total bytes and evicted least-recently-used first.
+ */
+@Component
+public class StyleReferenceCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(StyleReferenceCache.class);
+
+    private final StyleRepository styleRepository;
+    private final ImageService imageService;
+    private final long maxBytes;
+    private final boolean warmOnStartup;
+
+    private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public StyleReferenceCache(StyleRepository styleRepository,
+                               ImageService imageService,
+                               @Value("${style.cache.max-bytes:67108864}") long maxBytes,
+                               @Value("${style.cache.warm-on-startup:true}") boolean warmOnStartup) {
+        this.styleRepository = styleRepository;
+        this.imageService = imageService;
+        this.maxBytes = maxBytes;
+        this.warmOnStartup = warmOnStartup;
+    }
+
+    public byte[] getReference(Style style) throws IOException {
+        Key key = new Key(style.getId(), style.getSampleImageUrl());
+        byte[] cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+
+        // Loaded outside the lock; two racing misses both load, the second put wins
+        byte[] loaded = imageService.resizeImage(imageService.downloadImage(style.getSampleImageUrl()),
+                ImageService.TARGET_WIDTH, ImageService.TARGET_HEIGHT);
+        store(key, loaded);
+        return loaded;
+    }
+
+    public synchronized void invalidate(Long styleId) {
+        Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, byte[]> entry = it.next();
+            if (entry.getKey().styleId().equals(styleId)) {
+                currentBytes -= entry.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    @EventListener
+    public void onStyleChanged(StyleChangedEvent event) {
+        invalidate(event.getStyleId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmOnStartup) return;
+
+        for (Style style : styleRepository.findAll()) {
+            if (style.getSampleImageUrl() == null || style.getSampleImageUrl().isBlank()) continue;
+            try {
+                getReference(style);
+            } catch (Exception e) {
+                log.warn("Could not warm style reference {}: {}", style.getId(), e.getMessage());
+            }
+        }
+        log.info("Style reference cache warmed: {} entries, {} bytes", size(), bytes());
+    }
+
+    private synchronized byte[] lookup(Key key) {
+        return entries.get(key);
+    }
+
+    private synchronized void store(Key key, byte[] value) {
+        if (value.length > maxBytes) return;
+
+        byte[] previous = entries.put(key, value);
+        if (previous != null) currentBytes -= previous.length;
+        currentBytes += value.length;
+
+        Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Key, byte[]> eldest = it.next();
+            currentBytes -= eldest.getValue().length;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long bytes() {
+        return currentBytes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("style.reference.cache.hits", hits, AtomicLong::get).register(registry);
+        FunctionCounter.builder("style.reference.cache.misses", misses, AtomicLong::get).register(registry);
+        FunctionCounter.builder("style.reference.cache.evictions", evictions, AtomicLong::get).register(registry);
+        Gauge.builder("style.reference.cache.size", this, StyleReferenceCache::size).register(registry);
+        Gauge.builder("style.reference.cache.bytes", this, StyleReferenceCache::bytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private record Key(Long styleId, String sampleUrl) {
+    }
+}
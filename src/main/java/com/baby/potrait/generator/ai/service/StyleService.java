@@ -2,6 +2,7 @@ package com.baby.potrait.generator.ai.service;
 
 import com.baby.potrait.generator.ai.entity.Style;
 import com.baby.potrait.generator.ai.repository.StyleRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -11,10 +12,12 @@ import java.util.Optional;
 public class StyleService {
 
     private final StyleRepository styleRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
 
-    public StyleService(StyleRepository styleRepository) {
+    public StyleService(StyleRepository styleRepository, ApplicationEventPublisher eventPublisher) {
         this.styleRepository = styleRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Style> getAllStyles() {
@@ -26,6 +29,21 @@ public class StyleService {
     }
 
     public Style createStyle(Style style) {
-        return styleRepository.save(style);
+        Style saved = styleRepository.save(style);
+        eventPublisher.publishEvent(new StyleChangedEvent(saved.getId()));
+        return saved;
+    }
+
+    public Style updateStyle(Long id, Style update) {
+        Style style = styleRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Style not found"));
+
+        style.setName(update.getName());
+        style.setPrompt(update.getPrompt());
+        style.setSampleImageUrl(update.getSampleImageUrl());
+
+        Style saved = styleRepository.save(style);
+        eventPublisher.publishEvent(new StyleChangedEvent(saved.getId()));
+        return saved;
     }
 }
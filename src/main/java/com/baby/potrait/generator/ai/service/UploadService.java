@@ -1,33 +1,155 @@
 package com.baby.potrait.generator.ai.service;
 
+import com.baby.potrait.generator.ai.resilience.CircuitBreaker;
+import com.baby.potrait.generator.ai.resilience.CloudinaryApiException;
+import com.baby.potrait.generator.ai.resilience.RetryPolicy;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Cloudinary uploads, streamed rather than handed over as whole-file arrays:
+ * originals go up in chunks read off the (possibly disk-spooled) multipart,
+ * generated images straight from their spool file.
+ */
 @Service
 public class UploadService {
 
+    // Cloudinary rejects chunks below 5 MB, except for the last one
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+
+    // How the SDK reports statuses it has no error body for, e.g. a 502 from a proxy
+    private static final Pattern UNEXPECTED_STATUS = Pattern.compile("unexpected status code - (\\d{3})");
+
     private final Cloudinary cloudinary;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final int chunkSize;
+    private final MeterRegistry registry;
 
-    public UploadService(Cloudinary cloudinary) {
+    public UploadService(Cloudinary cloudinary,
+                         @Qualifier("cloudinaryCircuitBreaker") CircuitBreaker circuitBreaker,
+                         @Qualifier("cloudinaryRetryPolicy") RetryPolicy retryPolicy,
+                         @Value("${cloudinary.upload.chunk-size:6MB}") DataSize chunkSize,
+                         MeterRegistry registry) {
+        if (chunkSize.toBytes() < MIN_CHUNK_SIZE || chunkSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("cloudinary.upload.chunk-size must be between 5MB and 2GB");
+        }
         this.cloudinary = cloudinary;
+        this.circuitBreaker = circuitBreaker;
+        this.retryPolicy = retryPolicy;
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.registry = registry;
     }
 
     public String uploadFile(MultipartFile file) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(file.getBytes(),
-                ObjectUtils.asMap("resource_type", "auto"));
+        return uploadOriginal(file, file.getSize(), file.getOriginalFilename());
+    }
+
+    /** Uploads an original kept on local disk, e.g. a queued job's photo. */
+    public String uploadFile(Path file) throws IOException {
+        return uploadOriginal(new FileSystemResource(file), Files.size(file), file.getFileName().toString());
+    }
+
+    private String uploadOriginal(InputStreamSource source, long size, String name) throws IOException {
+        // Named after the content, so a retried or repeated upload overwrites rather than duplicates
+        String publicId;
+        try (InputStream in = source.getInputStream()) {
+            publicId = "original-" + ContentHash.sha256(in);
+        }
+        // Only one chunk is buffered at a time, and a small photo gets a chunk of its own size
+        int bufferSize = (int) Math.max(1, Math.min(chunkSize, size));
+        Map<?, ?> uploadResult = upload("original", size, "Cloudinary upload of " + name, () -> {
+            // Every attempt reads the upload from the start again
+            try (InputStream in = source.getInputStream()) {
+                return cloudinary.uploader().uploadLarge(in, ObjectUtils.asMap(
+                        "resource_type", "auto",
+                        "public_id", publicId,
+                        "return_error", true
+                ), bufferSize);
+            }
+        });
         return uploadResult.get("secure_url").toString();
     }
-    public String uploadBytes(byte[] bytes, String filename) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(bytes,
-                ObjectUtils.asMap(
-                        "resource_type", "image",
-                        "public_id", filename.replace(".png", "")
-                ));
+
+    /** Uploads a generated image from disk; the SDK streams the file into the request body. */
+    public String uploadImage(Path file, String publicId) throws IOException {
+        // A fixed public_id makes a repeated upload overwrite rather than duplicate, so it is safe to retry
+        Map<?, ?> uploadResult = upload("generated", Files.size(file), "Cloudinary upload of " + publicId,
+                () -> cloudinary.uploader().upload(file.toFile(),
+                        ObjectUtils.asMap(
+                                "resource_type", "image",
+                                "public_id", publicId,
+                                "return_error", true
+                        )));
         return uploadResult.get("secure_url").toString();
     }
+
+    /**
+     * Turns Cloudinary's error answers into {@link CloudinaryApiException} with
+     * the HTTP status, so only 5xx and rate limits are retried and count as an outage.
+     */
+    private static Map<?, ?> checked(Callable<Map<?, ?>> call) throws Exception {
+        Map<?, ?> result;
+        try {
+            result = call.call();
+        } catch (RuntimeException e) {
+            Matcher status = UNEXPECTED_STATUS.matcher(String.valueOf(e.getMessage()));
+            if (status.find()) {
+                throw new CloudinaryApiException(Integer.parseInt(status.group(1)), e.getMessage());
+            }
+            throw e;
+        }
+        // With return_error the SDK hands API errors back instead of throwing them without a status
+        if (result != null && result.get("error") instanceof Map<?, ?> error) {
+            Object code = result.get("http_code") != null ? result.get("http_code") : error.get("http_code");
+            int statusCode = code instanceof Number n ? n.intValue() : 500;
+            throw new CloudinaryApiException(statusCode, "Cloudinary upload failed with code " + statusCode + ": "
+                    + error.get("message"));
+        }
+        return result;
+    }
+
+    /** Runs an upload through retry and breaker, timed per {@code kind} including retries. */
+    private Map<?, ?> upload(String kind, long size, String operation, Callable<Map<?, ?>> call) throws IOException {
+        DistributionSummary.builder("cloudinary.upload.bytes")
+                .baseUnit("bytes")
+                .tag("kind", kind)
+                .register(registry)
+                .record(size);
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "failure";
+        try {
+            Map<?, ?> result = retryPolicy.call(operation, () -> circuitBreaker.call(() -> checked(call)));
+            outcome = "success";
+            return result;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(operation + " failed: " + e.getMessage(), e);
+        } finally {
+            sample.stop(Timer.builder("cloudinary.upload")
+                    .tag("kind", kind)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package com.baby.potrait.generator.ai.service;
+
+import okhttp3.Response;
+import org.springframework.core.io.InputStreamResource;
+
+import java.io.IOException;
+
+/**
+ * Streams an upstream response body straight to the client. Reports the
+ * upstream Content-Length so Spring can answer a Range request without
+ * reading the stream twice; closing the stream releases the connection.
+ */
+public class UpstreamImageResource extends InputStreamResource {
+
+    private final long contentLength;
+
+    public UpstreamImageResource(Response response) {
+        super(response.body().byteStream(), "upstream image");
+        this.contentLength = response.body().contentLength();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (contentLength < 0) {
+            throw new IOException("Upstream did not report a content length");
+        }
+        return contentLength;
+    }
+}
@@ -0,0 +1,203 @@
+package com.baby.potrait.generator.ai.job;
+
+import com.baby.potrait.generator.ai.entity.Portrait;
+import com.baby.potrait.generator.ai.entity.PortraitStatus;
+import com.baby.potrait.generator.ai.entity.Style;
+import com.baby.potrait.generator.ai.logging.DebugLogSampler;
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import com.baby.potrait.generator.ai.service.GenerateService;
+import com.baby.potrait.generator.ai.service.GenerationResult;
+import com.baby.potrait.generator.ai.service.ImageService;
+import com.baby.potrait.generator.ai.service.PortraitService;
+import com.baby.potrait.generator.ai.service.StyleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Job mode end to end on the local transport: submit, pick-up by the worker
+ * pool and the final status, with the provider and storage stubbed out.
+ */
+class GenerationJobFlowTest {
+
+    private static final long STYLE_ID = 7L;
+    private static final byte[] PHOTO = {1, 2, 3};
+    private static final String ORIGINAL_URL = "https://res.cloudinary.test/original.png";
+    private static final String GENERATED_URL = "https://res.cloudinary.test/generated.png";
+
+    @TempDir
+    Path uploadDir;
+
+    private final Map<Long, Portrait> portraits = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    private PortraitService portraitService;
+    private ImageService imageService;
+    private GenerateService generateService;
+    private InProcessGenerationJobPublisher publisher;
+    private GenerationJobService jobService;
+
+    private final MockMultipartFile file = new MockMultipartFile("file", "baby.png", "image/png", PHOTO);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        portraitService = mock(PortraitService.class);
+        imageService = mock(ImageService.class);
+        generateService = mock(GenerateService.class);
+        StyleService styleService = mock(StyleService.class);
+
+        Style style = new Style();
+        style.setId(STYLE_ID);
+        when(styleService.getStyleById(STYLE_ID)).thenReturn(Optional.of(style));
+
+        // A map stands in for the portraits table
+        when(portraitService.save(any())).thenAnswer(invocation -> {
+            Portrait portrait = invocation.getArgument(0);
+            if (portrait.getId() == null) {
+                portrait.setId(ids.incrementAndGet());
+            }
+            portraits.put(portrait.getId(), portrait);
+            return portrait;
+        });
+        when(portraitService.getPortraitById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(portraits.get(invocation.<Long>getArgument(0))));
+
+        JobUploadStore uploads = new JobUploadStore(uploadDir.toString());
+        GenerationJobWorker worker = new GenerationJobWorker(generateService, portraitService, uploads,
+                new DebugLogSampler(0), 2);
+        publisher = new InProcessGenerationJobPublisher(worker, 2, 10, Duration.ofMillis(50));
+        jobService = new GenerationJobService(styleService, portraitService, publisher, imageService, uploads);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.destroy();
+    }
+
+    private long spooledUploads() throws IOException {
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            return files.count();
+        }
+    }
+
+    /** The worker removes the upload after its last save, so wait for both rather than for the save count. */
+    private GenerationJobStatus awaitFinished(long jobId, PortraitStatus expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            GenerationJobStatus status = jobService.getStatus(jobId).orElseThrow();
+            if (status.getStatus() == expected && spooledUploads() == 0) {
+                return status;
+            }
+            if (System.nanoTime() > deadline) {
+                assertThat(status.getStatus()).isEqualTo(expected);
+                assertThat(spooledUploads()).isZero();
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void submittedJobCompletesOnTheLocalTransport() throws Exception {
+        when(generateService.generateFromFile(any(), eq(STYLE_ID))).thenAnswer(invocation -> {
+            // The worker reads the photo that was spooled at submit
+            assertThat(Files.readAllBytes(invocation.<Path>getArgument(0))).isEqualTo(PHOTO);
+            return new GenerationResult(ORIGINAL_URL, GENERATED_URL, "hash", "params", false);
+        });
+
+        GenerationJobStatus submitted = jobService.submit(file, STYLE_ID);
+        assertThat(submitted.getStatus()).isEqualTo(PortraitStatus.PENDING);
+
+        GenerationJobStatus status = awaitFinished(submitted.getJobId(), PortraitStatus.COMPLETED);
+        assertThat(status.getGeneratedImageUrl()).isEqualTo(GENERATED_URL);
+        assertThat(status.getErrorMessage()).isNull();
+        assertThat(portraits.get(submitted.getJobId()).getUploadedFileUrl()).isEqualTo(ORIGINAL_URL);
+        // Submit, PROCESSING and the final state each save the portrait once
+        verify(portraitService, times(3)).save(any());
+    }
+
+    @Test
+    void submitOnlyChecksTheHeaderOnTheRequestThread() throws Exception {
+        // Keep the worker from finishing so the state right after submit can be checked
+        when(generateService.generateFromFile(any(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new GenerationResult(ORIGINAL_URL, GENERATED_URL, "hash", "params", false);
+        });
+
+        jobService.submit(file, STYLE_ID);
+
+        verify(imageService).admit(file);
+        verify(imageService, never()).resizeImage(any(MockMultipartFile.class), eq(1024), eq(1024));
+        assertThat(spooledUploads()).isEqualTo(1);
+    }
+
+    @Test
+    void failedGenerationMarksTheJobFailed() throws Exception {
+        when(generateService.generateFromFile(any(), eq(STYLE_ID)))
+                .thenThrow(new IllegalStateException("Stability API error: 400"));
+
+        GenerationJobStatus submitted = jobService.submit(file, STYLE_ID);
+
+        GenerationJobStatus status = awaitFinished(submitted.getJobId(), PortraitStatus.FAILED);
+        assertThat(status.getGeneratedImageUrl()).isNull();
+        assertThat(status.getErrorMessage()).isEqualTo("Stability API error: 400");
+    }
+
+    @Test
+    void busyProviderIsRetriedAfterTheDelay() throws Exception {
+        when(generateService.generateFromFile(any(), eq(STYLE_ID)))
+                .thenThrow(new ProviderBusyException("busy", 1000))
+                .thenReturn(new GenerationResult(ORIGINAL_URL, GENERATED_URL, "hash", "params", false));
+
+        GenerationJobStatus submitted = jobService.submit(file, STYLE_ID);
+
+        GenerationJobStatus status = awaitFinished(submitted.getJobId(), PortraitStatus.COMPLETED);
+        assertThat(status.getErrorMessage()).isNull();
+        // Submit, then PROCESSING and PENDING for the busy run, then PROCESSING and COMPLETED for the retry
+        verify(portraitService, times(5)).save(any());
+    }
+
+    @Test
+    void busyProviderFailsTheJobOnceAttemptsRunOut() throws Exception {
+        when(generateService.generateFromFile(any(), eq(STYLE_ID)))
+                .thenThrow(new ProviderBusyException("busy", 1000));
+
+        GenerationJobStatus submitted = jobService.submit(file, STYLE_ID);
+
+        GenerationJobStatus status = awaitFinished(submitted.getJobId(), PortraitStatus.FAILED);
+        assertThat(status.getErrorMessage()).isEqualTo("busy");
+        verify(generateService, times(2)).generateFromFile(any(), eq(STYLE_ID));
+    }
+
+    @Test
+    void unknownStyleIsRejectedBeforeAnyWork() throws Exception {
+        Throwable thrown = catchThrowable(() -> jobService.submit(file, 99L));
+
+        assertThat(thrown).isInstanceOf(RuntimeException.class).hasMessage("Style not found");
+        verify(portraitService, never()).save(any());
+        assertThat(spooledUploads()).isZero();
+    }
+}
@@ -0,0 +1,218 @@
+package com.baby.potrait.generator.ai.provider;
+
+import com.baby.potrait.generator.ai.controller.PortraitController;
+import com.baby.potrait.generator.ai.job.GenerationJobService;
+import com.baby.potrait.generator.ai.ratelimit.ProviderBusyException;
+import com.baby.potrait.generator.ai.ratelimit.ProviderCallLimiter;
+import com.baby.potrait.generator.ai.resilience.CircuitBreaker;
+import com.baby.potrait.generator.ai.resilience.ResilienceConfig;
+import com.baby.potrait.generator.ai.service.BatchGenerationService;
+import com.baby.potrait.generator.ai.service.GenerateService;
+import com.baby.potrait.generator.ai.service.PortraitDownloadService;
+import com.baby.potrait.generator.ai.service.PortraitService;
+import com.baby.potrait.generator.ai.service.StyleService;
+import com.baby.potrait.generator.ai.service.UploadService;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A 429 from Stability, served by a local fake of the API, has to surface as
+ * {@link ProviderBusyException} carrying the provider's Retry-After, back the
+ * limiter off without a retry, and reach the client as 503 with Retry-After.
+ */
+class StabilityRateLimitIntegrationTest {
+
+    private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3};
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private HttpServer fakeStability;
+
+    private MeterRegistry registry;
+    private ProviderCallLimiter callLimiter;
+    private StabilityGenerationProvider provider;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fakeStability = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        fakeStability.createContext("/v1/generation/image-to-image", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = "{\"name\":\"rate_limit_exceeded\",\"message\":\"Slow down\"}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Retry-After", "7");
+            exchange.sendResponseHeaders(429, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        fakeStability.createContext("/slow", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        fakeStability.setExecutor(serverThreads);
+        fakeStability.start();
+
+        registry = new SimpleMeterRegistry();
+        callLimiter = new ProviderCallLimiter(registry, 100, 10, 8, 1, 32, 64, Duration.ofSeconds(5), 0.5, 2.0);
+        ResilienceConfig resilience = resilience(5, Duration.ofSeconds(30));
+        provider = provider(callLimiter, resilience.stabilityCircuitBreaker(registry), resilience);
+    }
+
+    /** The production retry and breaker predicates, with delays short enough for a test. */
+    private static ResilienceConfig resilience(int failureThreshold, Duration openDuration) {
+        ResilienceConfig resilience = new ResilienceConfig();
+        ReflectionTestUtils.setField(resilience, "stabilityMaxAttempts", 3);
+        ReflectionTestUtils.setField(resilience, "stabilityBaseDelay", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(resilience, "stabilityMaxDelay", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(resilience, "stabilityFailureThreshold", failureThreshold);
+        ReflectionTestUtils.setField(resilience, "stabilityOpenDuration", openDuration);
+        return resilience;
+    }
+
+    private StabilityGenerationProvider provider(ProviderCallLimiter limiter, CircuitBreaker breaker,
+                                                 ResilienceConfig resilience) {
+        return provider(new OkHttpClient(), limiter, breaker, resilience, "/v1/generation/image-to-image");
+    }
+
+    private StabilityGenerationProvider provider(OkHttpClient client, ProviderCallLimiter limiter,
+                                                 CircuitBreaker breaker, ResilienceConfig resilience, String path) {
+        StabilityGenerationProvider provider = new StabilityGenerationProvider(client, limiter, breaker,
+                resilience.stabilityRetryPolicy(), 32, 0.2, registry);
+        ReflectionTestUtils.setField(provider, "stabilityApiKey", "test-key");
+        ReflectionTestUtils.setField(provider, "stabilityEndpoint",
+                "http://127.0.0.1:" + fakeStability.getAddress().getPort() + path);
+        return provider;
+    }
+
+    @AfterEach
+    void tearDown() {
+        fakeStability.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private int generate() throws IOException {
+        return provider.generate(new GenerationRequest(IMAGE, IMAGE, "a portrait", 1),
+                () -> mock(ArtifactSink.class));
+    }
+
+    @Test
+    void rateLimitBecomesProviderBusyWithTheProviderRetryAfter() {
+        ProviderBusyException busy = catchThrowableOfType(ProviderBusyException.class, this::generate);
+
+        assertThat(busy).hasMessage("Stability API rate limit exceeded");
+        assertThat(busy.getRetryAfterSeconds()).isEqualTo(7);
+        // A 429 is not an outage: no retry, and the limiter backs off instead
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(registry.get("stability.limiter.overloads").counter().count()).isEqualTo(1);
+        assertThat(registry.get("stability.limiter.limit").gauge().value()).isEqualTo(4);
+        assertThat(registry.get("stability.limiter.in_flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void callTimeoutBacksTheLimiterOff() {
+        // OkHttp reports its call timeout as a plain InterruptedIOException, not a SocketTimeoutException
+        OkHttpClient client = new OkHttpClient.Builder().callTimeout(Duration.ofMillis(200)).build();
+        ResilienceConfig resilience = resilience(5, Duration.ofSeconds(30));
+        StabilityGenerationProvider slow = provider(client, callLimiter,
+                resilience.stabilityCircuitBreaker(registry), resilience, "/slow");
+
+        InterruptedIOException timeout = catchThrowableOfType(InterruptedIOException.class,
+                () -> slow.generate(new GenerationRequest(IMAGE, IMAGE, "a portrait", 1), () -> mock(ArtifactSink.class)));
+
+        assertThat(timeout).isNotNull().isNotInstanceOf(SocketTimeoutException.class);
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(registry.get("stability.limiter.overloads").counter().count()).isEqualTo(1);
+        assertThat(registry.get("stability.limiter.limit").gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void limiterRejectionLeavesTheHalfOpenTrialForARealCall() throws Exception {
+        MeterRegistry breakerRegistry = new SimpleMeterRegistry();
+        ResilienceConfig resilience = resilience(1, Duration.ofMillis(1));
+        CircuitBreaker breaker = resilience.stabilityCircuitBreaker(breakerRegistry);
+        // One slot, no waiting: while the test holds it every call is turned away locally
+        ProviderCallLimiter limiter = new ProviderCallLimiter(breakerRegistry, 100, 10, 1, 1, 1, 0,
+                Duration.ZERO, 0.5, 2.0);
+        StabilityGenerationProvider limited = provider(limiter, breaker, resilience);
+
+        catchThrowable(() -> breaker.call(() -> {
+            throw new ConnectException("Connection refused");
+        }));
+        Thread.sleep(5);
+
+        try (ProviderCallLimiter.Permit held = limiter.acquire()) {
+            Throwable thrown = catchThrowable(() -> limited.generate(new GenerationRequest(IMAGE, IMAGE, "a portrait", 1),
+                    () -> mock(ArtifactSink.class)));
+            assertThat(thrown).isInstanceOf(ProviderBusyException.class);
+            held.onSuccess();
+        }
+
+        // Never reaching the provider says nothing about it: no trial was used and the circuit did not close
+        assertThat(requests.get()).isZero();
+        assertThat(breaker.getState()).isNotEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.isCallPermitted()).isTrue();
+    }
+
+    @Test
+    void rateLimitReachesTheClientAs503WithRetryAfter() throws Exception {
+        GenerateService generateService = mock(GenerateService.class);
+        when(generateService.generateImage(any(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            generate();
+            throw new AssertionError("The provider call should have been turned away");
+        });
+        PortraitController controller = new PortraitController(mock(PortraitService.class),
+                mock(StyleService.class), generateService, mock(UploadService.class),
+                mock(GenerationJobService.class), mock(PortraitDownloadService.class),
+                mock(BatchGenerationService.class));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mvc.perform(multipart("/api/generate")
+                        .file(new MockMultipartFile("file", "baby.png", "image/png", IMAGE))
+                        .param("styleId", "1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"));
+    }
+}
@@ -0,0 +1,130 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static AdaptiveConcurrencyLimit limit(int initial, int min, int max, int maxQueue) {
+        return new AdaptiveConcurrencyLimit(initial, min, max, maxQueue, 0.5, 2.0);
+    }
+
+    /** Runs one call through the limit that completes within the latency budget. */
+    private static void succeed(AdaptiveConcurrencyLimit limit, long latencyNanos) throws InterruptedException {
+        assertThat(limit.acquire(0)).isEqualTo(AdaptiveConcurrencyLimit.AcquireResult.ACQUIRED);
+        limit.onSuccess(latencyNanos);
+    }
+
+    @Test
+    void growsByAboutOnePerWindowOfSuccesses() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(4, 1, 10, 0);
+
+        for (int i = 0; i < 4; i++) {
+            succeed(limit, LATENCY);
+        }
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        succeed(limit, LATENCY);
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void growthStopsAtTheMaximum() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(4, 1, 5, 0);
+
+        for (int i = 0; i < 50; i++) {
+            succeed(limit, LATENCY);
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void overloadShrinksMultiplicatively() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(16, 1, 32, 0);
+
+        limit.acquire(0);
+        limit.onOverload();
+        assertThat(limit.getLimit()).isEqualTo(8);
+
+        limit.acquire(0);
+        limit.onOverload();
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void shrinkStopsAtTheMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(8, 3, 32, 0);
+
+        for (int i = 0; i < 10; i++) {
+            limit.acquire(0);
+            limit.onOverload();
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void latencyWellAboveTheBaselineShrinks() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(8, 1, 32, 0);
+        succeed(limit, LATENCY);
+
+        succeed(limit, LATENCY * 3);
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void ignoredOutcomeLeavesTheLimitAlone() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(8, 1, 32, 0);
+
+        limit.acquire(0);
+        limit.onIgnore();
+
+        assertThat(limit.getLimit()).isEqualTo(8);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void callsBeyondTheLimitAreQueuedOrTurnedAway() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = limit(1, 1, 1, 0);
+        limit.acquire(0);
+
+        assertThat(limit.acquire(ONE_SECOND)).isEqualTo(AdaptiveConcurrencyLimit.AcquireResult.QUEUE_FULL);
+
+        AdaptiveConcurrencyLimit queued = limit(1, 1, 1, 1);
+        queued.acquire(0);
+        assertThat(queued.acquire(TimeUnit.MILLISECONDS.toNanos(20)))
+                .isEqualTo(AdaptiveConcurrencyLimit.AcquireResult.TIMEOUT);
+        assertThat(queued.getWaiting()).isZero();
+    }
+
+    @Test
+    void releasedSlotWakesAWaiter() throws Exception {
+        AdaptiveConcurrencyLimit limit = limit(1, 1, 1, 1);
+        limit.acquire(0);
+
+        CompletableFuture<AdaptiveConcurrencyLimit.AcquireResult> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limit.acquire(ONE_SECOND * 5);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limit.getWaiting() == 0) {
+            Thread.onSpinWait();
+        }
+        limit.onSuccess(LATENCY);
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isEqualTo(AdaptiveConcurrencyLimit.AcquireResult.ACQUIRED);
+        assertThat(limit.getInFlight()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,82 @@
+package com.baby.potrait.generator.ai.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void burstIsServedWithoutWaiting() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+
+        assertThat(bucket.reserve(0)).isZero();
+        assertThat(bucket.reserve(0)).isZero();
+        assertThat(bucket.reserve(0)).isZero();
+        // The next token is a second away
+        assertThat(bucket.reserve(0)).isEqualTo(-1);
+    }
+
+    @Test
+    void emptyBucketReportsTheWaitForTheNextToken() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.reserve(0);
+
+        long wait = bucket.reserve(ONE_SECOND);
+
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void reservationsQueueUpBehindEachOther() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.reserve(0);
+
+        long first = bucket.reserve(ONE_SECOND);
+        long second = bucket.reserve(ONE_SECOND);
+
+        // Each reservation takes a token that has not been refilled yet
+        assertThat(second - first).isGreaterThan(TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    void refusedReservationTakesNoToken() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.reserve(0);
+
+        assertThat(bucket.reserve(0)).isEqualTo(-1);
+        assertThat(bucket.reserve(0)).isEqualTo(-1);
+        // Still only one token ahead, not three
+        assertThat(bucket.reserve(ONE_SECOND)).isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void tokensRefillOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertThat(bucket.reserve(0)).isZero();
+        assertThat(bucket.reserve(0)).isEqualTo(-1);
+
+        // One token takes 10ms at 100 per second
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        assertThat(bucket.reserve(0)).isZero();
+    }
+
+    @Test
+    void refillIsCappedAtTheBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 2);
+        bucket.reserve(0);
+        bucket.reserve(0);
+
+        // Long enough for far more than two tokens
+        TimeUnit.MILLISECONDS.sleep(100);
+
+        assertThat(bucket.reserve(0)).isZero();
+        assertThat(bucket.reserve(0)).isZero();
+        assertThat(bucket.reserve(0)).isEqualTo(-1);
+    }
+}